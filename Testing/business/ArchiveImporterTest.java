@@ -0,0 +1,195 @@
+package business;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+import bll.ArchiveImporter;
+import bll.EditorBO;
+import dal.FacadeDAO;
+import dal.InMemoryEditorDBDAO;
+import dal.SpooledText;
+import dto.ImportReport;
+import dto.Pages;
+
+/**
+ * Tests for importing archive entries and streams, run against the in-memory
+ * backend so no database is needed.
+ */
+public class ArchiveImporterTest {
+
+    /**
+     * Test positive case: The text files of a ZIP archive are imported without extracting it
+     * Expected: Nested text entries are stored, other entries left out, repeated content linked
+     */
+    @Test
+    void testImportZipArchive() throws IOException {
+        Path archive = Files.createTempFile("corpus", ".zip");
+        archive.toFile().deleteOnExit();
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("books/"));
+            addZipEntry(zip, "books/first.txt", "النص الأول");
+            addZipEntry(zip, "books/part/second.md5", "النص الثاني");
+            addZipEntry(zip, "cover.png", "not text");
+            // Same content as the first entry under another name
+            addZipEntry(zip, "copy.txt", "النص الأول");
+        }
+
+        InMemoryEditorDBDAO dao = new InMemoryEditorDBDAO();
+        ImportReport report = new ArchiveImporter(new EditorBO(new FacadeDAO(dao)), 3).importArchive(archive);
+
+        assertEquals(Arrays.asList("books/first.txt", "books/part/second.md5", "copy.txt"), report.getImported(),
+            "Text entries should be imported in archive order");
+        assertTrue(report.getFailed().isEmpty());
+        assertEquals(3, dao.getFilesFromDB().size());
+        assertEquals(1, report.getDedup().getLinkedFiles(), "The repeated content should reuse the stored analytics");
+    }
+
+    /**
+     * Test positive case: A gzipped TAR archive with a name longer than its header allows
+     * Expected: Both files are imported under their full paths, the directory entry is passed over
+     */
+    @Test
+    void testImportGzippedTarArchive() throws IOException {
+        String longName = "corpus/" + repeat("مجلد/", 30) + "long.txt";
+        Path archive = Files.createTempFile("corpus", ".tar.gz");
+        archive.toFile().deleteOnExit();
+        try (OutputStream tar = new GZIPOutputStream(Files.newOutputStream(archive))) {
+            addTarEntry(tar, "corpus/", '5', new byte[0]);
+            addTarEntry(tar, "corpus/short.txt", '0', "نص قصير".getBytes(StandardCharsets.UTF_8));
+            // GNU form: the name is stored as the content of a header entry before the file
+            addTarEntry(tar, "././@LongLink", 'L', longName.getBytes(StandardCharsets.UTF_8));
+            addTarEntry(tar, longName.substring(0, 99), '0', "نص طويل الاسم".getBytes(StandardCharsets.UTF_8));
+            // End of archive
+            tar.write(new byte[1024]);
+        }
+
+        InMemoryEditorDBDAO dao = new InMemoryEditorDBDAO();
+        ImportReport report = new ArchiveImporter(new EditorBO(new FacadeDAO(dao)), 2).importArchive(archive);
+
+        assertEquals(Arrays.asList("corpus/short.txt", longName), report.getImported());
+        assertEquals(2, dao.getFilesFromDB().size());
+    }
+
+    /**
+     * Test boundary case: An entry larger than is kept in memory goes through a temporary file
+     * Expected: The entry is stored with all of its text, the same as importing it from disk
+     */
+    @Test
+    void testImportLargeZipEntry() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < SpooledText.MEMORY_LIMIT; i++) {
+            text.append("سطر رقم ").append(i).append("\r\n");
+        }
+        Path archive = Files.createTempFile("corpus", ".zip");
+        archive.toFile().deleteOnExit();
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            addZipEntry(zip, "large.txt", text.toString());
+        }
+
+        InMemoryEditorDBDAO dao = new InMemoryEditorDBDAO();
+        ImportReport report = new ArchiveImporter(new EditorBO(new FacadeDAO(dao)), 2).importArchive(archive);
+
+        assertEquals(Arrays.asList("large.txt"), report.getImported());
+        StringBuilder stored = new StringBuilder();
+        for (Pages page : dao.getFilesFromDB().get(0).getPages()) {
+            stored.append(page.getPageContent());
+        }
+        assertEquals(text.toString().replace("\r\n", "\n"), stored.toString(), "The whole entry should be stored");
+    }
+
+    /**
+     * Test positive case: Only streams larger than the memory limit are spooled to disk
+     * Expected: A small stream stays in memory, a large one is read back whole and its file deleted on close
+     */
+    @Test
+    void testSpooledText() throws IOException {
+        try (SpooledText small = SpooledText.read(new ByteArrayInputStream(new byte[100]))) {
+            assertFalse(small.isSpooled());
+        }
+
+        byte[] large = new byte[SpooledText.MEMORY_LIMIT + 1];
+        large[large.length - 1] = 7;
+        Path file;
+        try (SpooledText spooled = SpooledText.read(new ByteArrayInputStream(large))) {
+            assertTrue(spooled.isSpooled());
+            file = spooled.getFile();
+            assertArrayEquals(large, Files.readAllBytes(file));
+        }
+        assertFalse(Files.exists(file), "The temporary file should be deleted");
+    }
+
+    /**
+     * Test positive case: A stream is imported the same way as the file with the same bytes
+     * Expected: Importing the stream under the file's name is recognised as the same content
+     */
+    @Test
+    void testStreamImportMatchesFileImport() throws IOException {
+        byte[] content = "سطر أول\r\nسطر ثان\rسطر أخير".getBytes(StandardCharsets.UTF_8);
+        File file = File.createTempFile("stream", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content);
+
+        InMemoryEditorDBDAO dao = new InMemoryEditorDBDAO();
+        EditorBO editorBO = new EditorBO(new FacadeDAO(dao));
+        assertTrue(editorBO.importTextFiles(file, file.getName()));
+        assertTrue(editorBO.importTextFiles(new ByteArrayInputStream(content), file.getName()),
+            "Stream import should succeed");
+
+        // Same line endings after reading, so the same import hash
+        assertEquals(1, dao.getFilesFromDB().size(), "The stream should not be stored a second time");
+        assertEquals(1, editorBO.getDedupReport().getSkippedFiles());
+        assertFalse(editorBO.importTextFiles(new ByteArrayInputStream(content), "picture.png"),
+            "Only .txt and .md5 streams should be imported");
+    }
+
+    private void addZipEntry(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    // Writes a ustar header followed by the content, padded to whole 512 byte blocks
+    private void addTarEntry(OutputStream tar, String name, char type, byte[] content) throws IOException {
+        byte[] header = new byte[512];
+        put(header, 0, name.getBytes(StandardCharsets.UTF_8));
+        put(header, 100, "0000644".getBytes(StandardCharsets.US_ASCII));
+        put(header, 124, String.format("%011o", content.length).getBytes(StandardCharsets.US_ASCII));
+        put(header, 136, String.format("%011o", 0).getBytes(StandardCharsets.US_ASCII));
+        header[156] = (byte) type;
+        put(header, 257, "ustar\u000000".getBytes(StandardCharsets.US_ASCII));
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        int checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        put(header, 148, String.format("%06o\u0000 ", checksum).getBytes(StandardCharsets.US_ASCII));
+        tar.write(header);
+        tar.write(content);
+        tar.write(new byte[(512 - content.length % 512) % 512]);
+    }
+
+    private void put(byte[] header, int offset, byte[] value) {
+        System.arraycopy(value, 0, header, offset, Math.min(value.length, 100));
+    }
+
+    private String repeat(String text, int times) {
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            repeated.append(text);
+        }
+        return repeated.toString();
+    }
+}
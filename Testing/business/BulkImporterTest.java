@@ -0,0 +1,79 @@
+package business;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import bll.BulkImporter;
+import bll.EditorBO;
+import dal.FacadeDAO;
+import dal.InMemoryEditorDBDAO;
+import dto.ImportReport;
+
+/**
+ * Tests for the headless directory import, run against the in-memory backend
+ * so no database is needed.
+ */
+public class BulkImporterTest {
+
+    private Path directory;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (directory != null) {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Test positive case: A directory tree is imported, then imported again after more files were added
+     * Expected: The second run only imports the new file, the journaled ones are not imported twice
+     */
+    @Test
+    void testResumeSkipsJournaledFiles() throws IOException {
+        directory = Files.createTempDirectory("bulk-import");
+        Path nested = Files.createDirectories(directory.resolve("a").resolve("b"));
+        write(directory.resolve("first.txt"), "النص الأول");
+        write(nested.resolve("second.txt"), "النص الثاني");
+        write(nested.resolve("notes.md5"), "ملاحظات");
+        // Not a text file, so not part of the import
+        write(nested.resolve("picture.png"), "not text");
+        Path journal = directory.resolve("import.journal");
+
+        InMemoryEditorDBDAO dao = new InMemoryEditorDBDAO();
+        EditorBO editorBO = new EditorBO(new FacadeDAO(dao));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImportReport first = new BulkImporter(editorBO, 2, journal, new PrintStream(output)).importDirectory(directory);
+
+        assertEquals(3, first.getImported().size(), "Every text file in the tree should be imported");
+        assertTrue(first.getFailed().isEmpty());
+        assertEquals(3, Files.readAllLines(journal, StandardCharsets.UTF_8).size(), "Each stored file should be journaled");
+        assertTrue(output.toString().contains("pages/s"), "Throughput should be reported");
+
+        // As if the first run had stopped before this file
+        write(directory.resolve("third.txt"), "النص الثالث");
+        ImportReport second = new BulkImporter(editorBO, 2, journal, new PrintStream(output)).importDirectory(directory);
+
+        List<String> imported = second.getImported();
+        assertEquals(1, imported.size(), "Only the file missing from the journal should be imported");
+        assertEquals("third.txt", imported.get(0));
+        assertEquals(4, dao.getFilesFromDB().size(), "No file should be stored twice");
+    }
+
+    private void write(Path path, String content) throws IOException {
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
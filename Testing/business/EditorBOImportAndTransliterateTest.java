@@ -41,16 +41,50 @@ public class EditorBOImportAndTransliterateTest {
             return false;
         }
 
+        @Override
+        public int updateFileInDB(int id, String fileName, int pageNumber, String content, int expectedVersion) {
+            return -1;
+        }
+
         @Override
         public boolean deleteFileInDB(int id) {
             return false;
         }
 
+        @Override
+        public boolean deleteFilesInDB(java.util.Collection<Integer> ids) {
+            return false;
+        }
+
         @Override
         public java.util.List<dto.Documents> getFilesFromDB() {
             return Collections.emptyList();
         }
 
+        @Override
+        public dto.Documents getFileFromDB(int id) {
+            return null;
+        }
+
+        @Override
+        public java.util.List<dto.Pages> getPagesFromDB(int fileId, int fromPage, int toPage) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void forEachDocument(java.util.function.Consumer<dto.Documents> consumer) {
+        }
+
+        @Override
+        public java.util.Map<Integer, String> getAnalysisStatuses() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public dto.DedupReport getDedupReport() {
+            return new dto.DedupReport(0, 0, 0, 0);
+        }
+
         @Override
         public String transliterateInDB(int pageId, String arabicText) {
             // Simulate a simple transliteration result
@@ -72,6 +106,11 @@ public class EditorBOImportAndTransliterateTest {
             return Collections.emptyMap();
         }
 
+        @Override
+        public double getTfIdfScore(int fileId) {
+            return 0.0;
+        }
+
         @Override
         public double performTFIDF(java.util.List<String> unSelectedDocsContent, String selectedDocContent) {
             return 0.0;
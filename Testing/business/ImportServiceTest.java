@@ -0,0 +1,117 @@
+package business;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import bll.EditorBO;
+import bll.ImportService;
+import dal.FacadeDAO;
+import dal.InMemoryEditorDBDAO;
+import dto.ImportReport;
+
+/**
+ * Tests for the parallel multi-file import, run against the in-memory backend
+ * so no database is needed.
+ */
+public class ImportServiceTest {
+
+    private ImportService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * Test positive case: Many files are imported on several threads with one report at the end
+     * Expected: Every text file is stored, the unsupported one is reported as failed, progress reaches the total
+     */
+    @Test
+    void testImportManyFiles() throws IOException {
+        InMemoryEditorDBDAO dao = new InMemoryEditorDBDAO();
+        service = new ImportService(new EditorBO(new FacadeDAO(dao)), 4);
+
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            files.add(createFile("file" + i, ".txt", "محتوى الملف رقم " + i));
+        }
+        // Only .txt and .md5 files are imported
+        files.add(createFile("picture", ".png", "not text"));
+
+        AtomicInteger finished = new AtomicInteger();
+        List<Integer> completedCounts = Collections.synchronizedList(new ArrayList<>());
+        ImportReport report = service.importFiles(files, new ImportService.Listener() {
+            @Override
+            public void fileStarted(File file) {
+            }
+
+            @Override
+            public void fileFinished(File file, boolean imported, int completed, int total) {
+                finished.incrementAndGet();
+                completedCounts.add(completed);
+                assertEquals(21, total, "Every callback should know the total");
+            }
+        });
+
+        assertEquals(20, report.getImported().size(), "Every text file should be imported");
+        assertEquals(1, report.getFailed().size(), "The unsupported file should be reported");
+        assertEquals(0, report.getCancelled());
+        assertEquals(20, dao.getFilesFromDB().size(), "Every text file should be stored");
+        assertEquals(21, finished.get(), "Each file should report its progress once");
+        assertTrue(completedCounts.contains(21), "Aggregate progress should reach the total");
+        // The report keeps the order the files were given in
+        assertEquals(files.get(0).getName(), report.getImported().get(0));
+    }
+
+    /**
+     * Test positive case: Cancelling stops the files that have not started yet
+     * Expected: The file in progress is imported, the rest are counted as cancelled
+     */
+    @Test
+    void testCancelSkipsRemainingFiles() throws IOException {
+        InMemoryEditorDBDAO dao = new InMemoryEditorDBDAO();
+        // One worker, so the files run strictly one after the other
+        service = new ImportService(new EditorBO(new FacadeDAO(dao)), 1);
+
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            files.add(createFile("cancel" + i, ".txt", "نص للإلغاء " + i));
+        }
+
+        ImportReport report = service.importFiles(files, new ImportService.Listener() {
+            @Override
+            public void fileStarted(File file) {
+                service.cancel();
+            }
+
+            @Override
+            public void fileFinished(File file, boolean imported, int completed, int total) {
+            }
+        });
+
+        assertEquals(1, report.getImported().size(), "The file already started should finish");
+        assertEquals(4, report.getCancelled(), "The other files should not be imported");
+        assertEquals(1, dao.getFilesFromDB().size());
+    }
+
+    private File createFile(String prefix, String suffix, String content) throws IOException {
+        File file = File.createTempFile(prefix, suffix);
+        file.deleteOnExit();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(content);
+        }
+        return file;
+    }
+}
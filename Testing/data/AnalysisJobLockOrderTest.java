@@ -0,0 +1,124 @@
+package data;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import dal.DatabaseConnection;
+import dal.EditorDBDAO;
+import dto.Documents;
+import dto.Pages;
+
+/**
+ * Integration test for a save that runs while the analytics worker finishes
+ * the job of the same page. The worker's side is played on a connection of
+ * its own with the statements the worker runs, so the test can stop it
+ * between writing the analytics and finishing the job.
+ *
+ * Needs the database from config.properties and is skipped without one.
+ */
+public class AnalysisJobLockOrderTest {
+
+    private static final String CONTENT = "نص لاختبار ترتيب الأقفال";
+
+    /**
+     * Test positive case: A page is saved while the worker holds it and then finishes its job
+     * Expected: The save waits for the worker instead of deadlocking; both commit and the page is queued again
+     */
+    @Test
+    void testSaveDuringFinishJobs() throws Exception {
+        Connection worker;
+        try {
+            worker = DatabaseConnection.getInstance().getConnection();
+        } catch (SQLException e) {
+            assumeTrue(false, "Skipping lock order test because the database is not reachable");
+            return;
+        }
+
+        EditorDBDAO dao = new EditorDBDAO();
+        String fileName = "lock-order-" + System.nanoTime() + ".txt";
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Documents file = null;
+        try {
+            assertTrue(dao.createFileInDB(fileName, CONTENT), "Creating the file should succeed");
+            file = findFile(dao, fileName);
+            Pages page = file.getPages().get(0);
+            int fileId = file.getId();
+
+            // The page's job as the worker claims it; no claim time, so a running worker leaves it alone
+            execute(worker, "DELETE FROM analysis_jobs WHERE pageId = ?", page.getPageId());
+            execute(worker, "INSERT INTO analysis_jobs (pageId, fileId, status) VALUES (?, ?, 'RUNNING')",
+                page.getPageId(), fileId);
+
+            // The worker writes analytics for the page; their foreign key holds the page row
+            worker.setAutoCommit(false);
+            execute(worker, "DELETE FROM transliteratedpages WHERE pageId = ?", page.getPageId());
+            try (PreparedStatement stmt = worker.prepareStatement(
+                    "INSERT INTO transliteratedpages (pageId, transliteratedText) VALUES (?, ?)")) {
+                stmt.setInt(1, page.getPageId());
+                stmt.setString(2, "transliteration");
+                stmt.executeUpdate();
+            }
+
+            Future<Integer> save = executor.submit(
+                () -> dao.updateFileInDB(fileId, fileName, 1, CONTENT + " معدل", page.getVersion()));
+            // Give the save time to reach the page row
+            Thread.sleep(500);
+            assertFalse(save.isDone(), "The save should wait for the worker's lock on the page");
+
+            // What finishJobs does for a page still at the analysed version
+            execute(worker, "DELETE FROM analysis_jobs WHERE pageId = ? AND status = 'RUNNING'", page.getPageId());
+            worker.commit();
+
+            assertEquals(page.getVersion() + 1, (int) save.get(30, TimeUnit.SECONDS),
+                "The save should commit once the worker has");
+            // The worker analysed the old content, so the saved page needs a new job
+            assertEquals("PENDING", jobStatus(worker, page.getPageId()), "The saved page should be queued again");
+        } finally {
+            executor.shutdownNow();
+            worker.rollback();
+            worker.setAutoCommit(true);
+            worker.close();
+            if (file != null) {
+                dao.deleteFileInDB(file.getId());
+            }
+        }
+    }
+
+    private Documents findFile(EditorDBDAO dao, String fileName) {
+        for (Documents document : dao.getFilesFromDB()) {
+            if (document.getName().equals(fileName)) {
+                return document;
+            }
+        }
+        throw new AssertionError(fileName + " was not stored");
+    }
+
+    private void execute(Connection conn, String query, int... ids) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < ids.length; i++) {
+                stmt.setInt(i + 1, ids[i]);
+            }
+            stmt.executeUpdate();
+        }
+    }
+
+    private String jobStatus(Connection conn, int pageId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT status FROM analysis_jobs WHERE pageId = ?")) {
+            stmt.setInt(1, pageId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString("status") : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package data;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import dal.InMemoryDAOFactory;
+import dal.InMemoryEditorDBDAO;
+import dal.Paginator;
+import dal.TFIDFCalculator;
+import dto.DedupReport;
+import dto.Documents;
+import dto.Pages;
+import dto.UpdateConflictException;
+
+/**
+ * Test class for the in-memory IEditorDBDAO backend
+ * Verifies create, read, update and delete without a database
+ */
+public class InMemoryEditorDBDAOTest {
+
+    private InMemoryEditorDBDAO dao;
+
+    @BeforeEach
+    void setUp() {
+        // Every test starts from an empty store
+        dao = new InMemoryEditorDBDAO();
+    }
+
+    /**
+     * Test positive case: A created file can be listed and read back
+     * Expected: Name, hash and page content match what was stored
+     */
+    @Test
+    void testCreateAndReadFile() {
+        String content = "هذا نص تجريبي";
+
+        // Store a file
+        assertTrue(dao.createFileInDB("first.txt", content), "Creating a file should succeed");
+
+        // The file list should contain exactly the new file
+        List<Documents> files = dao.getFilesFromDB();
+        assertEquals(1, files.size(), "Exactly one file should be listed");
+
+        // Read it back by id and compare the stored values
+        Documents doc = dao.getFileFromDB(files.get(0).getId());
+        assertEquals("first.txt", doc.getName(), "File name should be stored");
+        assertNotNull(doc.getHash(), "File hash should be calculated");
+        assertEquals(1, doc.getPages().size(), "Short content should fit on one page");
+        assertEquals(content, doc.getPages().get(0).getPageContent(), "Page content should be stored");
+    }
+
+    /**
+     * Test positive case: Updating a page replaces its content and the file name
+     * Expected: The new content and name are returned on the next read
+     */
+    @Test
+    void testUpdateFile() {
+        dao.createFileInDB("draft.txt", "نص قديم");
+        int fileId = dao.getFilesFromDB().get(0).getId();
+
+        // Update content and name of page 1
+        assertTrue(dao.updateFileInDB(fileId, "final.txt", 1, "نص جديد"), "Update should succeed");
+
+        Documents doc = dao.getFileFromDB(fileId);
+        assertEquals("final.txt", doc.getName(), "File name should be updated");
+        assertEquals("نص جديد", doc.getPages().get(0).getPageContent(), "Page content should be updated");
+
+        // Saving the same content again is accepted as a no-op
+        assertTrue(dao.updateFileInDB(fileId, "final.txt", 1, "نص جديد"), "Unchanged update should succeed");
+    }
+
+    /**
+     * Test negative case: Updating a missing page or file fails
+     * Expected: updateFileInDB returns false and nothing changes
+     */
+    @Test
+    void testUpdateMissingPage() {
+        dao.createFileInDB("file.txt", "نص");
+        int fileId = dao.getFilesFromDB().get(0).getId();
+
+        assertFalse(dao.updateFileInDB(fileId, "file.txt", 5, "نص"), "Updating a missing page should fail");
+        assertFalse(dao.updateFileInDB(fileId + 100, "file.txt", 1, "نص"), "Updating a missing file should fail");
+        assertEquals("نص", dao.getFileFromDB(fileId).getPages().get(0).getPageContent(),
+            "Stored content should be unchanged");
+    }
+
+    /**
+     * Test positive case: Deleting a file removes it and its pages
+     * Expected: The file is gone and a second delete returns false
+     */
+    @Test
+    void testDeleteFile() {
+        dao.createFileInDB("file.txt", "نص");
+        int fileId = dao.getFilesFromDB().get(0).getId();
+
+        assertTrue(dao.deleteFileInDB(fileId), "Deleting an existing file should succeed");
+        assertNull(dao.getFileFromDB(fileId), "Deleted file should not be found");
+        assertTrue(dao.getPagesFromDB(fileId, 1, 10).isEmpty(), "Deleted file should have no pages");
+        assertFalse(dao.deleteFileInDB(fileId), "Deleting a missing file should return false");
+    }
+
+    /**
+     * Test positive case: Several files are deleted in one call
+     * Expected: Only the files that were not selected remain
+     */
+    @Test
+    void testDeleteMultipleFiles() {
+        dao.createFileInDB("a.txt", "نص أول");
+        dao.createFileInDB("b.txt", "نص ثان");
+        dao.createFileInDB("c.txt", "نص ثالث");
+        List<Documents> files = dao.getFilesFromDB();
+
+        // Delete the first and the last file together
+        assertTrue(dao.deleteFilesInDB(Arrays.asList(files.get(0).getId(), files.get(2).getId())),
+            "Deleting several files should succeed");
+
+        List<Documents> remaining = dao.getFilesFromDB();
+        assertEquals(1, remaining.size(), "One file should remain");
+        assertEquals("b.txt", remaining.get(0).getName(), "The file that was not selected should remain");
+    }
+
+    /**
+     * Test negative case: Deleting several files when one of them does not exist
+     * Expected: The call reports the failure and deletes nothing, like a rolled back transaction
+     */
+    @Test
+    void testDeleteMultipleFilesWithMissingId() {
+        dao.createFileInDB("a.txt", "نص أول");
+        int fileId = dao.getFilesFromDB().get(0).getId();
+
+        assertFalse(dao.deleteFilesInDB(Arrays.asList(fileId, fileId + 100)),
+            "A missing file should make the delete report failure");
+        assertNotNull(dao.getFileFromDB(fileId), "The existing file should not be deleted");
+        assertTrue(dao.deleteFilesInDB(Arrays.asList(fileId)), "The existing file alone can be deleted");
+        assertFalse(dao.deleteFilesInDB(Arrays.asList(fileId)), "Deleting only missing files should return false");
+    }
+
+    /**
+     * Test positive case: Page ranges return only the requested pages in order
+     * Expected: Pages 2 to 3 of a three page file
+     */
+    @Test
+    void testGetPageRange() {
+        // 250 characters are split into three pages of at most 100 characters
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 250; i++) {
+            content.append('ب');
+        }
+        dao.createFileInDB("long.txt", content.toString());
+        int fileId = dao.getFilesFromDB().get(0).getId();
+
+        List<Pages> pages = dao.getPagesFromDB(fileId, 2, 3);
+        assertEquals(2, pages.size(), "Two pages should be returned");
+        assertEquals(2, pages.get(0).getPageNumber(), "First returned page should be page 2");
+        assertEquals(3, pages.get(1).getPageNumber(), "Second returned page should be page 3");
+    }
+
+    /**
+     * Test positive case: Importing the same file again is skipped
+     * Expected: One stored file, and the skip is counted in the dedup report
+     */
+    @Test
+    void testReimportSameFileIsSkipped() {
+        String content = "نص مكرر";
+        assertTrue(dao.createFileInDB("same.txt", content), "First import should succeed");
+        assertTrue(dao.createFileInDB("same.txt", content), "Duplicate import should still report success");
+
+        assertEquals(1, dao.getFilesFromDB().size(), "The duplicate should not be stored again");
+        DedupReport report = dao.getDedupReport();
+        assertEquals(1, report.getSkippedFiles(), "One file should be reported as skipped");
+        assertEquals(1, report.getReusedPages(), "The skipped page should be reported");
+        assertEquals(content.length(), report.getReusedCharacters(), "The skipped characters should be reported");
+    }
+
+    /**
+     * Test positive case: Same content under a new name reuses the existing analysis
+     * Expected: A second file with its own pages, reported as linked
+     */
+    @Test
+    void testSameContentNewNameIsLinked() {
+        String content = "نص مشترك بين ملفين";
+        dao.createFileInDB("original.txt", content);
+        assertTrue(dao.createFileInDB("copy.txt", content), "Import under a new name should succeed");
+
+        List<Documents> files = dao.getFilesFromDB();
+        assertEquals(2, files.size(), "Both names should be listed");
+        Pages original = files.get(0).getPages().get(0);
+        Pages copy = files.get(1).getPages().get(0);
+        assertNotEquals(original.getPageId(), copy.getPageId(), "The copy should have its own pages");
+        assertEquals(dao.getTransliteration(original.getPageId()), dao.getTransliteration(copy.getPageId()),
+            "The copy should reuse the stored analytics");
+        assertEquals(1, dao.getDedupReport().getLinkedFiles(), "One file should be reported as linked");
+    }
+
+    /**
+     * Test boundary case: A file is imported again after the page size changed
+     * Expected: The same name is skipped; another name is stored with its own analysis, not linked
+     */
+    @Test
+    void testReimportWithOtherPageSize() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            text.append("كلمة").append(i).append(' ');
+        }
+        String content = text.toString().trim();
+        dao.setPaginator(new Paginator(100, Paginator.Unit.CHARS));
+        assertTrue(dao.createFileInDB("paged.txt", content), "First import should succeed");
+        int storedPages = dao.getFilesFromDB().get(0).getPages().size();
+
+        // Smaller pages from now on, as after a change of pages.size
+        dao.setPaginator(new Paginator(40, Paginator.Unit.CHARS));
+        assertTrue(dao.createFileInDB("paged.txt", content), "Re-import should report success");
+        assertEquals(1, dao.getFilesFromDB().size(), "The same text should not be stored again");
+        assertEquals(1, dao.getDedupReport().getSkippedFiles(), "The re-import should be skipped");
+
+        // Pages with other boundaries cannot share the stored page analytics
+        assertTrue(dao.createFileInDB("other.txt", content), "Import under a new name should succeed");
+        List<Documents> files = dao.getFilesFromDB();
+        assertEquals(2, files.size(), "The new name should be stored");
+        assertTrue(files.get(1).getPages().size() > storedPages, "The new file should use the smaller pages");
+        assertEquals(0, dao.getDedupReport().getLinkedFiles(), "The new file should not be linked");
+    }
+
+    /**
+     * Test negative case: A file edited after import is no longer a duplicate
+     * Expected: Re-importing the original content stores a new file
+     */
+    @Test
+    void testEditedFileIsNotADuplicate() {
+        dao.createFileInDB("edited.txt", "نص أصلي");
+        int fileId = dao.getFilesFromDB().get(0).getId();
+        dao.updateFileInDB(fileId, "edited.txt", 1, "نص معدل");
+
+        // The stored hash still belongs to the original content, but the pages differ
+        assertTrue(dao.createFileInDB("edited.txt", "نص أصلي"), "Re-import should succeed");
+        assertEquals(2, dao.getFilesFromDB().size(), "The original content should be stored again");
+        assertFalse(dao.getDedupReport().hasSavings(), "Nothing should be reported as saved");
+    }
+
+    /**
+     * Test to verify concurrent imports: the same content is stored once, different files all succeed
+     * Expected: One file for the repeated content plus one per distinct file
+     */
+    @Test
+    void testConcurrentImports() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 8; i++) {
+                int n = i;
+                // Every thread imports the same file and one file of its own
+                results.add(executor.submit(() -> dao.createFileInDB("shared.txt", "نص مشترك")));
+                results.add(executor.submit(() -> dao.createFileInDB("own" + n + ".txt", "نص رقم " + n)));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get(30, TimeUnit.SECONDS), "Every import should succeed");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(9, dao.getFilesFromDB().size(), "The shared file should be stored only once");
+        assertEquals(7, dao.getDedupReport().getSkippedFiles(), "The other shared imports should be skipped");
+    }
+
+    /**
+     * Test positive case: Saving from the current version succeeds and bumps the version
+     * Expected: Versions count up from 0, an unchanged save keeps the version
+     */
+    @Test
+    void testVersionedUpdate() throws UpdateConflictException {
+        dao.createFileInDB("versioned.txt", "النسخة الأولى");
+        int fileId = dao.getFilesFromDB().get(0).getId();
+        assertEquals(0, dao.getPagesFromDB(fileId, 1, 1).get(0).getVersion(), "A new page should start at version 0");
+
+        assertEquals(1, dao.updateFileInDB(fileId, "versioned.txt", 1, "النسخة الثانية", 0));
+        // Saving the same content again is not a new version
+        assertEquals(1, dao.updateFileInDB(fileId, "versioned.txt", 1, "النسخة الثانية", 1));
+        assertEquals(1, dao.getPagesFromDB(fileId, 1, 1).get(0).getVersion(), "The stored version should be 1");
+    }
+
+    /**
+     * Test negative case: Saving from an outdated version is reported instead of overwriting
+     * Expected: UpdateConflictException carrying the stored page, which stays unchanged
+     */
+    @Test
+    void testStaleUpdateConflicts() throws UpdateConflictException {
+        dao.createFileInDB("shared.txt", "نص أصلي");
+        int fileId = dao.getFilesFromDB().get(0).getId();
+        // Two editors load version 0, the first one saves
+        dao.updateFileInDB(fileId, "shared.txt", 1, "تعديل الأول", 0);
+
+        UpdateConflictException conflict = assertThrows(UpdateConflictException.class,
+            () -> dao.updateFileInDB(fileId, "shared.txt", 1, "تعديل الثاني", 0));
+        assertEquals("تعديل الأول", conflict.getCurrent().getPageContent(), "The conflict should carry the stored page");
+        assertEquals(1, conflict.getCurrent().getVersion(), "The conflict should carry the stored version");
+        assertEquals("تعديل الأول", dao.getPagesFromDB(fileId, 1, 1).get(0).getPageContent(),
+            "The first edit should not be lost");
+
+        // Saving again on top of the stored version goes through
+        assertEquals(2, dao.updateFileInDB(fileId, "shared.txt", 1, "تعديل الثاني", conflict.getCurrent().getVersion()));
+        // The unversioned save still overwrites, as before
+        assertTrue(dao.updateFileInDB(fileId, "shared.txt", 1, "تعديل ثالث"), "A blind save should succeed");
+        assertEquals(3, dao.getPagesFromDB(fileId, 1, 1).get(0).getVersion());
+    }
+
+    /**
+     * Test positive case: The stored TF-IDF score follows the corpus once enough files were added
+     * Expected: The score served equals one computed against all other files
+     */
+    @Test
+    void testStoredScoreIsRefreshedAfterDrift() {
+        dao.createFileInDB("first.txt", "كتاب علم كتاب");
+        int fileId = dao.getFilesFromDB().get(0).getId();
+        double scoreAlone = dao.getTfIdfScore(fileId);
+
+        // Enough new files that share its words to make the stored score stale
+        TFIDFCalculator others = new TFIDFCalculator();
+        for (int i = 0; i < 5; i++) {
+            String content = "كتاب قلم " + i;
+            dao.createFileInDB("other" + i + ".txt", content);
+            others.addDocumentToCorpus(content);
+        }
+
+        double refreshed = dao.getTfIdfScore(fileId);
+        assertEquals(others.calculateDocumentTfIdf("كتاب علم كتاب"), refreshed, 1e-9,
+            "The score should be computed against the current corpus");
+        assertNotEquals(scoreAlone, refreshed, "The score from the empty corpus should not be served");
+        assertTrue(Double.isNaN(dao.getTfIdfScore(-1)), "A missing file has no score");
+    }
+
+    /**
+     * Test to verify the factory hands out one shared in-memory store
+     * Expected: createEditorDAO returns the same instance every time
+     */
+    @Test
+    void testFactorySharesStore() {
+        InMemoryDAOFactory factory = new InMemoryDAOFactory();
+        assertSame(factory.createEditorDAO(), factory.createEditorDAO(),
+            "The factory should return the same in-memory DAO");
+    }
+}
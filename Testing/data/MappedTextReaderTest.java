@@ -0,0 +1,113 @@
+package data;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import dal.HashCalculator;
+import dal.MappedTextReader;
+import dal.PaginationDAO;
+import dal.Paginator;
+import dal.TFIDFCalculator;
+import dto.Pages;
+
+/**
+ * Test class for the streaming import of text files
+ * Verifies that reading a file in pieces gives the same text, pages, hash and score as reading it whole
+ */
+public class MappedTextReaderTest {
+
+    /**
+     * Test positive case: Line endings come out as they did when files were read line by line
+     * Expected: \r\n and \r become \n, and a last line without an ending gets one
+     */
+    @Test
+    void testLineEndingsMatchLineByLineImport() throws Exception {
+        String raw = "سطر أول\r\nسطر ثان\rسطر ثالث\n\nسطر أخير";
+        File file = createFile(raw.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(readLineByLine(raw), MappedTextReader.readAll(file.toPath()));
+        assertEquals("", MappedTextReader.readAll(createFile(new byte[0]).toPath()), "An empty file stays empty");
+    }
+
+    /**
+     * Test positive case: A file large enough to be memory-mapped is streamed into the same pages
+     * Expected: Pages, hash and TF-IDF score equal those computed from the whole text
+     */
+    @Test
+    void testStreamedPagesMatchWholeText() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 1_500_000; i++) {
+            // Two and four byte characters, so pieces end inside multi-byte sequences
+            text.append("بِسْمِ اللَّهِ ").append(i).append(" 😀\n");
+        }
+        String content = text.toString();
+        File file = createFile(content.getBytes(StandardCharsets.UTF_8));
+
+        List<Pages> expected = PaginationDAO.paginate(content);
+        HashCalculator.TextDigest digest = new HashCalculator.TextDigest();
+        TFIDFCalculator.DocumentTerms terms = new TFIDFCalculator.DocumentTerms();
+        List<Pages> streamed = new ArrayList<>();
+        try (Paginator.PageReader pageReader = Paginator.DEFAULT.pages(new MappedTextReader(file.toPath()))) {
+            Pages page;
+            while ((page = pageReader.next()) != null) {
+                streamed.add(page);
+                digest.update(page.getPageContent());
+                terms.add(page.getPageContent());
+            }
+        }
+
+        assertEquals(expected.size(), streamed.size(), "Page count should match");
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getPageNumber(), streamed.get(i).getPageNumber());
+            assertEquals(expected.get(i).getPageContent(), streamed.get(i).getPageContent(), "Page " + (i + 1));
+        }
+        assertEquals(HashCalculator.calculateHash(content), digest.finish(), "Hash should match the whole text");
+
+        TFIDFCalculator calculator = new TFIDFCalculator();
+        calculator.addDocumentToCorpus("اللَّهِ الرحمن");
+        assertEquals(calculator.calculateDocumentTfIdf(content), calculator.calculateDocumentTfIdf(terms), 1e-9,
+            "Score should match the whole text");
+    }
+
+    /**
+     * Test positive case: Empty text still has one empty page
+     * Expected: Same single page as paginate("")
+     */
+    @Test
+    void testEmptyTextHasOnePage() throws IOException {
+        try (Paginator.PageReader pageReader = Paginator.DEFAULT.pages(new StringReader(""))) {
+            Pages page = pageReader.next();
+            assertNotNull(page);
+            assertEquals(1, page.getPageNumber());
+            assertEquals("", page.getPageContent());
+            assertNull(pageReader.next(), "There should be no second page");
+        }
+    }
+
+    private String readLineByLine(String raw) throws IOException {
+        StringBuilder content = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new StringReader(raw))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                content.append(line).append("\n");
+            }
+        }
+        return content.toString();
+    }
+
+    private File createFile(byte[] content) throws IOException {
+        File file = File.createTempFile("mapped-text", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+}
@@ -0,0 +1,67 @@
+package data;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
+import dal.PageCodec;
+
+/**
+ * Test class for the compressed page storage codec
+ * Verifies round trips and the effect of a trained dictionary without a database
+ */
+public class PageCodecTest {
+
+    private static final String PAGE = "ذَهَبَ الطَّالِبُ إِلَى الْمَدْرَسَةِ فِي الصَّبَاحِ وَقَرَأَ الْكِتَابَ";
+
+    /**
+     * Test positive case: Text compressed without a dictionary reads back unchanged
+     * Expected: The decompressed text equals the original, including empty text
+     */
+    @Test
+    void testRoundTripWithoutDictionary() throws DataFormatException {
+        byte[] blob = PageCodec.compress(PAGE, PageCodec.NO_DICTIONARY, null, Deflater.BEST_SPEED);
+        assertEquals(PageCodec.NO_DICTIONARY, PageCodec.dictionaryId(blob), "The header should record no dictionary");
+        assertEquals(PAGE, PageCodec.decompress(blob, id -> null), "Content should survive the round trip");
+
+        byte[] empty = PageCodec.compress("", PageCodec.NO_DICTIONARY, null, Deflater.BEST_SPEED);
+        assertEquals("", PageCodec.decompress(empty, id -> null), "Empty content should survive the round trip");
+    }
+
+    /**
+     * Test positive case: A dictionary trained on the corpus makes short pages smaller
+     * Expected: Same content, fewer bytes than without the dictionary
+     */
+    @Test
+    void testTrainedDictionaryImprovesCompression() throws DataFormatException {
+        List<String> corpus = Collections.nCopies(20, PAGE);
+        byte[] dictionary = PageCodec.trainDictionary(corpus, PageCodec.MAX_DICTIONARY_SIZE);
+        assertTrue(dictionary.length > 0, "Repeated words should end up in the dictionary");
+
+        byte[] plain = PageCodec.compress(PAGE, PageCodec.NO_DICTIONARY, null, Deflater.BEST_SPEED);
+        byte[] primed = PageCodec.compress(PAGE, 7, dictionary, Deflater.BEST_SPEED);
+
+        assertEquals(7, PageCodec.dictionaryId(primed), "The header should record the dictionary id");
+        assertEquals(PAGE, PageCodec.decompress(primed, id -> id == 7 ? dictionary : null),
+            "Content should survive the round trip with a dictionary");
+        assertTrue(primed.length < plain.length, "The dictionary should make the page smaller");
+    }
+
+    /**
+     * Test negative case: Content written with a dictionary cannot be read without it
+     * Expected: DataFormatException instead of wrong text
+     */
+    @Test
+    void testMissingDictionaryIsReported() {
+        byte[] dictionary = PageCodec.trainDictionary(Arrays.asList(PAGE, PAGE), PageCodec.MAX_DICTIONARY_SIZE);
+        byte[] blob = PageCodec.compress(PAGE, 3, dictionary, Deflater.BEST_SPEED);
+
+        assertThrows(DataFormatException.class, () -> PageCodec.decompress(blob, id -> null),
+            "Reading without the dictionary should fail");
+    }
+}
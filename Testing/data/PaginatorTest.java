@@ -0,0 +1,131 @@
+package data;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import dal.Paginator;
+import dto.Pages;
+
+/**
+ * Test class for the word-aware Paginator
+ * Verifies that pages end between words and characters, in both units and when streamed
+ */
+public class PaginatorTest {
+
+    /**
+     * Test positive case: A word crossing the page size moves to the next page
+     * Expected: Pages end after whitespace and join back to the original text
+     */
+    @Test
+    void testPagesEndBetweenWords() {
+        String content = "alpha beta gamma delta";
+        List<Pages> pages = new Paginator(8, Paginator.Unit.CHARS).paginate(content);
+
+        // "alpha be" would cut "beta", so the page ends after the space
+        assertEquals("alpha ", pages.get(0).getPageContent());
+        assertEquals("beta ", pages.get(1).getPageContent());
+        assertEquals(content, join(pages), "Pages should join back to the content");
+        for (Pages page : pages) {
+            assertTrue(page.getPageContent().length() <= 8, "No page should exceed the size");
+        }
+    }
+
+    /**
+     * Test boundary case: Letters with harakat and emoji are never cut
+     * Expected: No page ends before a combining mark or inside a surrogate pair
+     */
+    @Test
+    void testGraphemesAreNotSplit() {
+        // One long word of letters with diacritics, then emoji with a skin tone modifier
+        String content = "بِسْمِاللَّهِالرَّحْمَٰنِ👍🏽👍🏽👍🏽";
+        List<Pages> pages = new Paginator(3, Paginator.Unit.CHARS).paginate(content);
+
+        assertEquals(content, join(pages));
+        for (int i = 1; i < pages.size(); i++) {
+            String page = pages.get(i).getPageContent();
+            int first = page.codePointAt(0);
+            assertNotEquals(Character.NON_SPACING_MARK, Character.getType(first), "Page " + (i + 1) + " starts with a mark");
+            assertFalse(Character.isLowSurrogate(page.charAt(0)), "Page " + (i + 1) + " starts inside a character");
+            assertFalse(first >= 0x1F3FB && first <= 0x1F3FF, "Page " + (i + 1) + " starts with a modifier");
+        }
+    }
+
+    /**
+     * Test positive case: Page size counted in words
+     * Expected: Each page holds that many words, with the whitespace after them
+     */
+    @Test
+    void testPageSizeInWords() {
+        String content = "one two  three four\nfive";
+        List<Pages> pages = new Paginator(2, Paginator.Unit.WORDS).paginate(content);
+
+        assertEquals(3, pages.size());
+        assertEquals("one two  ", pages.get(0).getPageContent());
+        assertEquals("three four\n", pages.get(1).getPageContent());
+        assertEquals("five", pages.get(2).getPageContent());
+    }
+
+    /**
+     * Test positive case: Streaming gives the same pages however the text arrives
+     * Expected: Reading one character at a time matches paginating the whole text, in both units
+     */
+    @Test
+    void testStreamingMatchesWholeText() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append(i % 7 == 0 ? "كَلِمَةٌطَوِيلَةٌجِدًّاجِدًّا" : "نص").append(i % 3 == 0 ? " 😀 " : " ");
+        }
+        String content = text.toString();
+
+        for (Paginator paginator : new Paginator[] { new Paginator(10, Paginator.Unit.CHARS),
+                new Paginator(3, Paginator.Unit.WORDS), Paginator.DEFAULT }) {
+            List<Pages> expected = paginator.paginate(content);
+            List<Pages> streamed = new ArrayList<>();
+            try (Paginator.PageReader pageReader = paginator.pages(new OneCharReader(content))) {
+                Pages page;
+                while ((page = pageReader.next()) != null) {
+                    streamed.add(page);
+                }
+            }
+
+            assertEquals(expected.size(), streamed.size(), paginator.getUnit() + ": page count should match");
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getPageContent(), streamed.get(i).getPageContent(),
+                    paginator.getUnit() + ": page " + (i + 1));
+            }
+        }
+    }
+
+    private String join(List<Pages> pages) {
+        StringBuilder content = new StringBuilder();
+        for (Pages page : pages) {
+            content.append(page.getPageContent());
+        }
+        return content.toString();
+    }
+
+    // Hands out one character per read, so every page boundary falls at the end of a read
+    private static class OneCharReader extends Reader {
+        private final StringReader reader;
+
+        OneCharReader(String text) {
+            reader = new StringReader(text);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return reader.read(buffer, offset, Math.min(1, length));
+        }
+
+        @Override
+        public void close() {
+            reader.close();
+        }
+    }
+}
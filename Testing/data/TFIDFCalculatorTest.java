@@ -3,6 +3,9 @@ package data;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import dal.TFIDFCalculator;
 
 /**
@@ -77,4 +80,56 @@ public class TFIDFCalculatorTest {
         assertFalse(Double.isInfinite(result),
                 "Special-character-only document should not yield an infinite TF-IDF score");
     }
+
+    /**
+     * Test positive case: Documents added and removed by their terms, as the stored statistics are kept
+     * Expected: Same score as a corpus built from the remaining documents only
+     */
+    @Test
+    void testIncrementalCorpusMatchesRebuiltCorpus() {
+        TFIDFCalculator incremental = new TFIDFCalculator();
+        incremental.addDocumentTerms(terms("ا ا ب").getTerms());
+        incremental.addDocumentTerms(terms("ب ج").getTerms());
+        incremental.addDocumentTerms(terms("ج د د").getTerms());
+
+        // The second document is edited, the third deleted
+        incremental.removeDocumentTerms(terms("ب ج").getTerms());
+        incremental.addDocumentTerms(terms("ب ه").getTerms());
+        incremental.removeDocumentTerms(terms("ج د د").getTerms());
+
+        TFIDFCalculator rebuilt = new TFIDFCalculator();
+        rebuilt.addDocumentToCorpus("ا ا ب");
+        rebuilt.addDocumentToCorpus("ب ه");
+
+        assertEquals(2, incremental.getCorpusSize());
+        assertEquals(rebuilt.calculateDocumentTfIdf("ب ج ه"), incremental.calculateDocumentTfIdf("ب ج ه"), 1e-9,
+                "Removed terms should no longer count");
+    }
+
+    /**
+     * Test positive case: Corpus given by the frequencies of the scored terms only
+     * Expected: Same score as the corpus built from its documents
+     */
+    @Test
+    void testCorpusFromStatisticsMatchesDocuments() {
+        TFIDFCalculator fromDocuments = new TFIDFCalculator();
+        fromDocuments.addDocumentToCorpus("ا ا ب");
+        fromDocuments.addDocumentToCorpus("ا ب ب");
+        fromDocuments.addDocumentToCorpus("ج د");
+
+        // Only the terms of the scored document are looked up; "ه" is in no document
+        Map<String, Integer> frequencies = new HashMap<>();
+        frequencies.put("ا", 2);
+        frequencies.put("ب", 2);
+        TFIDFCalculator fromStatistics = new TFIDFCalculator(frequencies, 3);
+
+        assertEquals(fromDocuments.calculateDocumentTfIdf("ا ب ه"), fromStatistics.calculateDocumentTfIdf(terms("ا ب ه")),
+                1e-9, "Score should only depend on the frequencies of the document's terms");
+    }
+
+    private TFIDFCalculator.DocumentTerms terms(String text) {
+        TFIDFCalculator.DocumentTerms terms = new TFIDFCalculator.DocumentTerms();
+        terms.add(text);
+        return terms;
+    }
 }
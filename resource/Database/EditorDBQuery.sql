@@ -7,7 +7,8 @@ CREATE TABLE `files` (
 	`fileHash` VARCHAR(255) NOT NULL COLLATE 'utf8mb4_general_ci',
 	`dateCreated` TIMESTAMP NOT NULL DEFAULT current_timestamp(),
 	`lastModified` TIMESTAMP NOT NULL DEFAULT current_timestamp() ON UPDATE current_timestamp(),
-	PRIMARY KEY (`fileid`) USING BTREE
+	PRIMARY KEY (`fileid`) USING BTREE,
+	INDEX `file_hash` (`fileHash`) USING BTREE
 )
 COLLATE='utf8mb4_general_ci'
 ENGINE=InnoDB
@@ -18,6 +19,8 @@ CREATE TABLE `pages` (
 	`fileId` INT(11) NOT NULL,
 	`pageNumber` INT(11) NOT NULL,
 	`pageContent` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
+	`pageContentZ` LONGBLOB NULL DEFAULT NULL,
+	`version` INT(11) NOT NULL DEFAULT '0',
 	PRIMARY KEY (`pageId`) USING BTREE,
 	UNIQUE INDEX `file_id` (`fileId`, `pageNumber`) USING BTREE,
 	CONSTRAINT `pages_ibfk_1` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
@@ -30,6 +33,7 @@ CREATE TABLE `transliteratedpages` (
 	`id` INT(11) NOT NULL AUTO_INCREMENT,
 	`pageId` INT(11) NOT NULL,
 	`transliteratedText` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
+	`transliteratedTextZ` LONGBLOB NULL DEFAULT NULL,
 	PRIMARY KEY (`id`) USING BTREE,
 	UNIQUE INDEX `page_id` (`pageId`) USING BTREE,
 	CONSTRAINT `transliteratedpages_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
@@ -39,90 +43,58 @@ ENGINE=InnoDB
 AUTO_INCREMENT=32
 ;
 
-CREATE TABLE `lemmatization` (
-	`id` INT(11) NOT NULL AUTO_INCREMENT,
-	`pageId` INT(11) NOT NULL,
-	`word` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
-	`lemma` LONGTEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
-	PRIMARY KEY (`id`) USING BTREE,
-	UNIQUE INDEX `page_id` (`id`, `pageId`) USING BTREE,
-	INDEX `lemmatization_ibfk_1` (`pageId`) USING BTREE,
-	CONSTRAINT `lemmatization_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+CREATE TABLE `words` (
+	`wordId` INT(11) NOT NULL AUTO_INCREMENT,
+	`word` VARCHAR(255) NOT NULL COLLATE 'utf8mb4_bin',
+	PRIMARY KEY (`wordId`) USING BTREE,
+	UNIQUE INDEX `word` (`word`) USING BTREE
 )
 COLLATE='utf8mb4_general_ci'
 ENGINE=InnoDB
-AUTO_INCREMENT=14573
 ;
 
-CREATE TABLE `pos` (
-	`id` INT(11) NOT NULL AUTO_INCREMENT,
-	`pageId` INT(11) NOT NULL,
-	`word` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
+CREATE TABLE `word_analysis` (
+	`wordId` INT(11) NOT NULL,
 	`pos` LONGTEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
-	PRIMARY KEY (`id`) USING BTREE,
-	UNIQUE INDEX `page_id` (`id`, `pageId`) USING BTREE,
-	INDEX `pos_ibfk_1` (`pageId`) USING BTREE,
-	CONSTRAINT `pos_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
-)
-COLLATE='utf8mb4_general_ci'
-ENGINE=InnoDB
-AUTO_INCREMENT=613
-;
-
-CREATE TABLE `rootextraction` (
-	`id` INT(11) NOT NULL AUTO_INCREMENT,
-	`pageId` INT(11) NOT NULL,
-	`word` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
+	`lemma` LONGTEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
 	`root` LONGTEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
-	PRIMARY KEY (`id`) USING BTREE,
-	UNIQUE INDEX `page_id` (`id`, `pageId`) USING BTREE,
-	INDEX `rootExtraction_ibfk_1` (`pageId`) USING BTREE,
-	CONSTRAINT `rootExtraction_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
-)
-COLLATE='utf8mb4_general_ci'
-ENGINE=InnoDB
-AUTO_INCREMENT=14506
-;
-
-CREATE TABLE `stemmation` (
-	`id` INT(11) NOT NULL AUTO_INCREMENT,
-	`pageId` INT(11) NOT NULL,
-	`word` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
 	`stem` LONGTEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
-	PRIMARY KEY (`id`) USING BTREE,
-	UNIQUE INDEX `page_id` (`id`, `pageId`) USING BTREE,
-	INDEX `stemmation_ibfk_1` (`pageId`) USING BTREE,
-	CONSTRAINT `stemmation_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+	`segment` LONGTEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
+	PRIMARY KEY (`wordId`) USING BTREE,
+	CONSTRAINT `word_analysis_word_fk` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE CASCADE
 )
 COLLATE='utf8mb4_general_ci'
 ENGINE=InnoDB
-AUTO_INCREMENT=14460
 ;
 
-CREATE TABLE `wordsegementation` (
-	`id` INT(11) NOT NULL AUTO_INCREMENT,
+CREATE TABLE `page_words` (
 	`pageId` INT(11) NOT NULL,
-	`word` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
-	`segment` LONGTEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
-	PRIMARY KEY (`id`) USING BTREE,
-	UNIQUE INDEX `page_id` (`id`, `pageId`) USING BTREE,
-	INDEX `wordSegementation_ibfk_1` (`pageId`) USING BTREE,
-	CONSTRAINT `wordSegementation_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+	`wordId` INT(11) NOT NULL,
+	`occurrences` INT(11) NOT NULL DEFAULT '1',
+	PRIMARY KEY (`pageId`, `wordId`) USING BTREE,
+	INDEX `page_words_word` (`wordId`) USING BTREE,
+	CONSTRAINT `page_words_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `page_words_word_fk` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
 )
 COLLATE='utf8mb4_general_ci'
 ENGINE=InnoDB
-AUTO_INCREMENT=14475
 ;
 
 CREATE TABLE `pkl` (
 	`id` INT(11) NOT NULL AUTO_INCREMENT,
 	`pageId` INT(11) NOT NULL,
-	`word` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
+	`wordId` INT(11) NOT NULL,
+	`leftWordId` INT(11) NOT NULL,
+	`rightWordId` INT(11) NOT NULL,
 	`pklScore` DOUBLE NOT NULL DEFAULT '0',
 	PRIMARY KEY (`id`) USING BTREE,
 	UNIQUE INDEX `page_id` (`id`, `pageId`) USING BTREE,
 	INDEX `pkl_ibfk_1` (`pageId`) USING BTREE,
-	CONSTRAINT `pkl_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+	INDEX `pkl_word` (`wordId`) USING BTREE,
+	CONSTRAINT `pkl_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `pkl_word_fk` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	CONSTRAINT `pkl_left_word_fk` FOREIGN KEY (`leftWordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	CONSTRAINT `pkl_right_word_fk` FOREIGN KEY (`rightWordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
 )
 COLLATE='utf8mb4_general_ci'
 ENGINE=InnoDB
@@ -131,12 +103,16 @@ AUTO_INCREMENT=14394
 CREATE TABLE `pmi` (
 	`id` INT(11) NOT NULL AUTO_INCREMENT,
 	`pageId` INT(11) NOT NULL,
-	`word` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
+	`wordId` INT(11) NOT NULL,
+	`nextWordId` INT(11) NOT NULL,
 	`pmiScore` DOUBLE NOT NULL DEFAULT '0',
 	PRIMARY KEY (`id`) USING BTREE,
 	UNIQUE INDEX `page_id` (`id`, `pageId`) USING BTREE,
 	INDEX `pmi_ibfk_1` (`pageId`) USING BTREE,
-	CONSTRAINT `pmi_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+	INDEX `pmi_word` (`wordId`) USING BTREE,
+	CONSTRAINT `pmi_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `pmi_word_fk` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	CONSTRAINT `pmi_next_word_fk` FOREIGN KEY (`nextWordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
 )
 COLLATE='utf8mb4_general_ci'
 ENGINE=InnoDB
@@ -146,11 +122,78 @@ CREATE TABLE `tfidf` (
 	`tfidfId` INT(11) NOT NULL AUTO_INCREMENT,
 	`fileId` INT(11) NOT NULL,
 	`tfidfScore` DOUBLE NOT NULL DEFAULT '0',
+	`scoredAt` BIGINT(20) NOT NULL DEFAULT '0',
+	`stale` TINYINT(1) NOT NULL DEFAULT '0',
 	PRIMARY KEY (`tfidfId`) USING BTREE,
 	INDEX `tfidf_fk` (`fileId`) USING BTREE,
+	INDEX `tfidf_scored` (`stale`, `scoredAt`) USING BTREE,
 	CONSTRAINT `tfidf_fk` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
 )
 COLLATE='utf8mb4_general_ci'
 ENGINE=InnoDB
 AUTO_INCREMENT=14517
 ;
+
+CREATE TABLE `term_df` (
+	`term` VARCHAR(255) NOT NULL COLLATE 'utf8mb4_bin',
+	`docCount` INT(11) NOT NULL DEFAULT '0',
+	PRIMARY KEY (`term`) USING BTREE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+
+CREATE TABLE `file_terms` (
+	`fileId` INT(11) NOT NULL,
+	`term` VARCHAR(255) NOT NULL COLLATE 'utf8mb4_bin',
+	`occurrences` INT(11) NOT NULL DEFAULT '1',
+	PRIMARY KEY (`fileId`, `term`) USING BTREE,
+	CONSTRAINT `file_terms_fk` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+
+CREATE TABLE `corpus_stats` (
+	`id` TINYINT(4) NOT NULL,
+	`documentCount` INT(11) NOT NULL DEFAULT '0',
+	`changeCount` BIGINT(20) NOT NULL DEFAULT '0',
+	PRIMARY KEY (`id`) USING BTREE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+
+CREATE TABLE `analysis_jobs` (
+	`pageId` INT(11) NOT NULL,
+	`fileId` INT(11) NOT NULL,
+	`status` ENUM('PENDING','RUNNING','FAILED') NOT NULL DEFAULT 'PENDING' COLLATE 'utf8mb4_general_ci',
+	`attempts` INT(11) NOT NULL DEFAULT '0',
+	`lastError` TEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
+	`queuedAt` TIMESTAMP NOT NULL DEFAULT current_timestamp(),
+	`claimedAt` TIMESTAMP NULL DEFAULT NULL,
+	PRIMARY KEY (`pageId`) USING BTREE,
+	INDEX `analysis_jobs_status` (`status`, `pageId`) USING BTREE,
+	INDEX `analysis_jobs_file` (`fileId`) USING BTREE,
+	CONSTRAINT `analysis_jobs_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+
+CREATE TABLE `compression_dictionaries` (
+	`dictId` INT(11) NOT NULL AUTO_INCREMENT,
+	`dictionary` MEDIUMBLOB NOT NULL,
+	`createdAt` TIMESTAMP NOT NULL DEFAULT current_timestamp(),
+	PRIMARY KEY (`dictId`) USING BTREE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+
+-- Per page views of the shared word analysis, in the shape of the old per page tables
+CREATE VIEW `pos` AS SELECT pw.`pageId`, pw.`wordId`, w.`word`, wa.`pos` FROM `page_words` pw JOIN `words` w ON w.`wordId` = pw.`wordId` JOIN `word_analysis` wa ON wa.`wordId` = pw.`wordId`;
+CREATE VIEW `lemmatization` AS SELECT pw.`pageId`, pw.`wordId`, w.`word`, wa.`lemma` FROM `page_words` pw JOIN `words` w ON w.`wordId` = pw.`wordId` JOIN `word_analysis` wa ON wa.`wordId` = pw.`wordId`;
+CREATE VIEW `rootextraction` AS SELECT pw.`pageId`, pw.`wordId`, w.`word`, wa.`root` FROM `page_words` pw JOIN `words` w ON w.`wordId` = pw.`wordId` JOIN `word_analysis` wa ON wa.`wordId` = pw.`wordId`;
+CREATE VIEW `stemmation` AS SELECT pw.`pageId`, pw.`wordId`, w.`word`, wa.`stem` FROM `page_words` pw JOIN `words` w ON w.`wordId` = pw.`wordId` JOIN `word_analysis` wa ON wa.`wordId` = pw.`wordId`;
+CREATE VIEW `wordsegementation` AS SELECT pw.`pageId`, pw.`wordId`, w.`word`, wa.`segment` FROM `page_words` pw JOIN `words` w ON w.`wordId` = pw.`wordId` JOIN `word_analysis` wa ON wa.`wordId` = pw.`wordId`;
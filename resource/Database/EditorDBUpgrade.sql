@@ -0,0 +1,189 @@
+-- Brings a database created from an older EditorDBQuery.sql up to date.
+-- Run each section once, in order; fresh installs only need EditorDBQuery.sql.
+Use realeditor
+
+-- Write-behind analytics: one queued job per page still to be analysed
+CREATE TABLE IF NOT EXISTS `analysis_jobs` (
+	`pageId` INT(11) NOT NULL,
+	`fileId` INT(11) NOT NULL,
+	`status` ENUM('PENDING','FAILED') NOT NULL DEFAULT 'PENDING' COLLATE 'utf8mb4_general_ci',
+	`attempts` INT(11) NOT NULL DEFAULT '0',
+	`lastError` TEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
+	`queuedAt` TIMESTAMP NOT NULL DEFAULT current_timestamp(),
+	PRIMARY KEY (`pageId`) USING BTREE,
+	INDEX `analysis_jobs_status` (`status`, `pageId`) USING BTREE,
+	INDEX `analysis_jobs_file` (`fileId`) USING BTREE,
+	CONSTRAINT `analysis_jobs_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+
+-- Word dictionary: analytics rows reference words by id instead of repeating
+-- the text. Existing analytics rows are dropped and every page is queued for
+-- the analytics worker to rebuild them.
+CREATE TABLE IF NOT EXISTS `words` (
+	`wordId` INT(11) NOT NULL AUTO_INCREMENT,
+	`word` VARCHAR(255) NOT NULL COLLATE 'utf8mb4_bin',
+	PRIMARY KEY (`wordId`) USING BTREE,
+	UNIQUE INDEX `word` (`word`) USING BTREE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+DELETE FROM `lemmatization`;
+ALTER TABLE `lemmatization`
+	DROP COLUMN `word`,
+	ADD COLUMN `wordId` INT(11) NOT NULL AFTER `pageId`,
+	ADD INDEX `lemmatization_word` (`wordId`) USING BTREE,
+	ADD CONSTRAINT `lemmatization_word_fk` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT;
+DELETE FROM `pos`;
+ALTER TABLE `pos`
+	DROP COLUMN `word`,
+	ADD COLUMN `wordId` INT(11) NOT NULL AFTER `pageId`,
+	ADD INDEX `pos_word` (`wordId`) USING BTREE,
+	ADD CONSTRAINT `pos_word_fk` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT;
+DELETE FROM `rootextraction`;
+ALTER TABLE `rootextraction`
+	DROP COLUMN `word`,
+	ADD COLUMN `wordId` INT(11) NOT NULL AFTER `pageId`,
+	ADD INDEX `rootextraction_word` (`wordId`) USING BTREE,
+	ADD CONSTRAINT `rootextraction_word_fk` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT;
+DELETE FROM `stemmation`;
+ALTER TABLE `stemmation`
+	DROP COLUMN `word`,
+	ADD COLUMN `wordId` INT(11) NOT NULL AFTER `pageId`,
+	ADD INDEX `stemmation_word` (`wordId`) USING BTREE,
+	ADD CONSTRAINT `stemmation_word_fk` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT;
+DELETE FROM `wordsegementation`;
+ALTER TABLE `wordsegementation`
+	DROP COLUMN `word`,
+	ADD COLUMN `wordId` INT(11) NOT NULL AFTER `pageId`,
+	ADD INDEX `wordsegementation_word` (`wordId`) USING BTREE,
+	ADD CONSTRAINT `wordsegementation_word_fk` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT;
+DELETE FROM `pkl`;
+ALTER TABLE `pkl`
+	DROP COLUMN `word`,
+	ADD COLUMN `wordId` INT(11) NOT NULL AFTER `pageId`,
+	ADD COLUMN `leftWordId` INT(11) NOT NULL AFTER `wordId`,
+	ADD COLUMN `rightWordId` INT(11) NOT NULL AFTER `leftWordId`,
+	ADD INDEX `pkl_word` (`wordId`) USING BTREE,
+	ADD CONSTRAINT `pkl_word_fk` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	ADD CONSTRAINT `pkl_left_word_fk` FOREIGN KEY (`leftWordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	ADD CONSTRAINT `pkl_right_word_fk` FOREIGN KEY (`rightWordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT;
+DELETE FROM `pmi`;
+ALTER TABLE `pmi`
+	DROP COLUMN `word`,
+	ADD COLUMN `wordId` INT(11) NOT NULL AFTER `pageId`,
+	ADD COLUMN `nextWordId` INT(11) NOT NULL AFTER `wordId`,
+	ADD INDEX `pmi_word` (`wordId`) USING BTREE,
+	ADD CONSTRAINT `pmi_word_fk` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	ADD CONSTRAINT `pmi_next_word_fk` FOREIGN KEY (`nextWordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT;
+INSERT IGNORE INTO `analysis_jobs` (`pageId`, `fileId`) SELECT `pageId`, `fileId` FROM `pages`;
+
+-- Shared word analysis: POS, lemma, root, stem and segment are stored once per
+-- word, pages keep only their word occurrences, and the old per page tables
+-- become views. Every page is queued again to fill page_words.
+CREATE TABLE IF NOT EXISTS `word_analysis` (
+	`wordId` INT(11) NOT NULL,
+	`pos` LONGTEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
+	`lemma` LONGTEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
+	`root` LONGTEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
+	`stem` LONGTEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
+	`segment` LONGTEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
+	PRIMARY KEY (`wordId`) USING BTREE,
+	CONSTRAINT `word_analysis_word_fk` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+
+CREATE TABLE IF NOT EXISTS `page_words` (
+	`pageId` INT(11) NOT NULL,
+	`wordId` INT(11) NOT NULL,
+	`occurrences` INT(11) NOT NULL DEFAULT '1',
+	PRIMARY KEY (`pageId`, `wordId`) USING BTREE,
+	INDEX `page_words_word` (`wordId`) USING BTREE,
+	CONSTRAINT `page_words_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `page_words_word_fk` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+DROP TABLE IF EXISTS `pos`, `lemmatization`, `rootextraction`, `stemmation`, `wordsegementation`;
+CREATE OR REPLACE VIEW `pos` AS SELECT pw.`pageId`, pw.`wordId`, w.`word`, wa.`pos` FROM `page_words` pw JOIN `words` w ON w.`wordId` = pw.`wordId` JOIN `word_analysis` wa ON wa.`wordId` = pw.`wordId`;
+CREATE OR REPLACE VIEW `lemmatization` AS SELECT pw.`pageId`, pw.`wordId`, w.`word`, wa.`lemma` FROM `page_words` pw JOIN `words` w ON w.`wordId` = pw.`wordId` JOIN `word_analysis` wa ON wa.`wordId` = pw.`wordId`;
+CREATE OR REPLACE VIEW `rootextraction` AS SELECT pw.`pageId`, pw.`wordId`, w.`word`, wa.`root` FROM `page_words` pw JOIN `words` w ON w.`wordId` = pw.`wordId` JOIN `word_analysis` wa ON wa.`wordId` = pw.`wordId`;
+CREATE OR REPLACE VIEW `stemmation` AS SELECT pw.`pageId`, pw.`wordId`, w.`word`, wa.`stem` FROM `page_words` pw JOIN `words` w ON w.`wordId` = pw.`wordId` JOIN `word_analysis` wa ON wa.`wordId` = pw.`wordId`;
+CREATE OR REPLACE VIEW `wordsegementation` AS SELECT pw.`pageId`, pw.`wordId`, w.`word`, wa.`segment` FROM `page_words` pw JOIN `words` w ON w.`wordId` = pw.`wordId` JOIN `word_analysis` wa ON wa.`wordId` = pw.`wordId`;
+INSERT IGNORE INTO `analysis_jobs` (`pageId`, `fileId`) SELECT `pageId`, `fileId` FROM `pages`;
+
+-- Index on the import hash, used to find files with the same content on import
+ALTER TABLE `files` ADD INDEX IF NOT EXISTS `file_hash` (`fileHash`) USING BTREE;
+
+-- Optional compressed storage: page content and transliterations can be kept
+-- deflated in the ...Z columns, with preset dictionaries trained on the corpus
+ALTER TABLE `pages` ADD COLUMN IF NOT EXISTS `pageContentZ` LONGBLOB NULL DEFAULT NULL AFTER `pageContent`;
+ALTER TABLE `transliteratedpages` ADD COLUMN IF NOT EXISTS `transliteratedTextZ` LONGBLOB NULL DEFAULT NULL AFTER `transliteratedText`;
+CREATE TABLE IF NOT EXISTS `compression_dictionaries` (
+	`dictId` INT(11) NOT NULL AUTO_INCREMENT,
+	`dictionary` MEDIUMBLOB NOT NULL,
+	`createdAt` TIMESTAMP NOT NULL DEFAULT current_timestamp(),
+	PRIMARY KEY (`dictId`) USING BTREE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+
+-- Optimistic concurrency: every page save bumps the page version, and a save
+-- made from an older version is reported as a conflict instead of overwriting
+ALTER TABLE `pages` ADD COLUMN IF NOT EXISTS `version` INT(11) NOT NULL DEFAULT '0' AFTER `pageContentZ`;
+
+-- TF-IDF corpus statistics, kept up to date on every import, save and delete
+-- instead of re-reading the whole corpus. The editor fills them from the
+-- stored files the first time it needs them.
+CREATE TABLE IF NOT EXISTS `term_df` (
+	`term` VARCHAR(255) NOT NULL COLLATE 'utf8mb4_bin',
+	`docCount` INT(11) NOT NULL DEFAULT '0',
+	PRIMARY KEY (`term`) USING BTREE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+CREATE TABLE IF NOT EXISTS `file_terms` (
+	`fileId` INT(11) NOT NULL,
+	`term` VARCHAR(255) NOT NULL COLLATE 'utf8mb4_bin',
+	PRIMARY KEY (`fileId`, `term`) USING BTREE,
+	CONSTRAINT `file_terms_fk` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+CREATE TABLE IF NOT EXISTS `corpus_stats` (
+	`id` TINYINT(4) NOT NULL,
+	`documentCount` INT(11) NOT NULL DEFAULT '0',
+	PRIMARY KEY (`id`) USING BTREE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+
+-- Stored TF-IDF scores are refreshed in the background once the corpus has
+-- changed enough since they were computed. The statistics are emptied so the
+-- editor fills them again with the term occurrences, and marks every score to
+-- be computed again.
+ALTER TABLE `tfidf`
+	ADD COLUMN IF NOT EXISTS `scoredAt` BIGINT(20) NOT NULL DEFAULT '0' AFTER `tfidfScore`,
+	ADD COLUMN IF NOT EXISTS `stale` TINYINT(1) NOT NULL DEFAULT '0' AFTER `scoredAt`,
+	ADD INDEX IF NOT EXISTS `tfidf_scored` (`stale`, `scoredAt`) USING BTREE;
+ALTER TABLE `file_terms` ADD COLUMN IF NOT EXISTS `occurrences` INT(11) NOT NULL DEFAULT '1' AFTER `term`;
+ALTER TABLE `corpus_stats` ADD COLUMN IF NOT EXISTS `changeCount` BIGINT(20) NOT NULL DEFAULT '0' AFTER `documentCount`;
+DELETE FROM `corpus_stats`;
+DELETE FROM `file_terms`;
+DELETE FROM `term_df`;
+
+-- The analytics worker claims jobs as RUNNING and reads their pages without
+-- locking them, so saving a page never waits for its analysis.
+ALTER TABLE `analysis_jobs`
+	MODIFY COLUMN `status` ENUM('PENDING','RUNNING','FAILED') NOT NULL DEFAULT 'PENDING' COLLATE 'utf8mb4_general_ci',
+	ADD COLUMN IF NOT EXISTS `claimedAt` TIMESTAMP NULL DEFAULT NULL AFTER `queuedAt`;
@@ -1,13 +1,23 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import bll.ArchiveImporter;
+import bll.BulkImporter;
 import bll.EditorBO;
 import bll.FacadeBO;
 import bll.IFacadeBO;
 import dal.AbstractDAOEditorFactory;
+import dal.ArchiveReader;
+import dal.DatabaseConnection;
 import dal.FacadeDAO;
 import dal.IEditorDBDAO;
 import dal.IFacadeDAO;
+import dto.ImportReport;
 import pl.EditorPO;
 
 public class Driver {
+    private static final String USAGE = "Usage: Driver import <directory or archive> [--threads N] [--journal FILE]";
 
 	public Driver() {
     }
@@ -17,6 +27,61 @@ public class Driver {
     	IEditorDBDAO editorDAO = AbstractDAOEditorFactory.getInstance().createEditorDAO();
         IFacadeDAO facadeDAO = new FacadeDAO(editorDAO);
         IFacadeBO editorBO = new FacadeBO(new EditorBO(facadeDAO));
+        if (args.length > 0) {
+            // Headless: import a directory or archive and exit instead of opening the editor
+            int status = runImport(editorBO, args);
+            DatabaseConnection.getInstance().closeConnection();
+            System.exit(status);
+        }
         new EditorPO(editorBO);
     }
-}
\ No newline at end of file
+
+    private static int runImport(IFacadeBO editorBO, String[] args) {
+        if (args.length < 2 || !args[0].equals("import")) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        Path source = Paths.get(args[1]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path journal = Paths.get("import.journal");
+        try {
+            for (int i = 2; i < args.length; i += 2) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException(args[i] + " needs a value");
+                }
+                if (args[i].equals("--threads")) {
+                    threads = Integer.parseInt(args[i + 1]);
+                } else if (args[i].equals("--journal")) {
+                    journal = Paths.get(args[i + 1]);
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+        boolean archive = Files.isRegularFile(source) && ArchiveReader.isArchive(source);
+        if (!archive && !Files.isDirectory(source)) {
+            System.err.println(source + " is not a directory or a .zip, .tar, .tar.gz or .tgz archive");
+            return 2;
+        }
+
+        try {
+            ImportReport report;
+            if (archive) {
+                // Read straight from the archive; the journal only applies to directories
+                report = new ArchiveImporter(editorBO, threads).importArchive(source);
+                System.out.println(report);
+            } else {
+                report = new BulkImporter(editorBO, threads, journal, System.out).importDirectory(source);
+            }
+            return report.getFailed().isEmpty() ? 0 : 1;
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.err.println("Import stopped: " + e.getMessage());
+            return 1;
+        }
+    }
+}
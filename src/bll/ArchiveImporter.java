@@ -0,0 +1,138 @@
+package bll;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import dal.ArchiveReader;
+import dal.SpooledText;
+import dto.DedupReport;
+import dto.ImportReport;
+import pl.EditorPO;
+
+/**
+ * Imports the text files in a ZIP or TAR archive straight from the archive,
+ * without extracting it to disk. The archive is read on the calling thread,
+ * one entry after the other; each text entry is then imported through
+ * {@link IEditorBO#importTextFiles(InputStream, String)} on a worker, so
+ * decoding, pagination and storing of several entries run at once. Entries
+ * with content that is already stored are skipped or linked by the usual
+ * import hash check.
+ *
+ * The archive can only be read in order, so each entry is taken out of it
+ * before a worker imports it: small entries are held in memory, larger ones
+ * are spooled to a temporary file, deleted once imported, and streamed in from
+ * there like any other file. At most twice as many entries as there are
+ * workers are held at a time.
+ */
+public class ArchiveImporter {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+
+	private final IEditorBO businessObj;
+	private final int threads;
+
+	public ArchiveImporter(IEditorBO businessObj, int threads) {
+		this.businessObj = businessObj;
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Imports the text files in {@code archive} and waits until all of them are
+	 * done. Files of other types are left out of the report; entries are named by
+	 * their path inside the archive.
+	 */
+	public ImportReport importArchive(Path archive) throws IOException {
+		long start = System.currentTimeMillis();
+		DedupReport before = businessObj.getDedupReport();
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "archive-worker-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		Semaphore inFlight = new Semaphore(2 * threads);
+		List<String> names = new ArrayList<>();
+		List<Future<Boolean>> results = new ArrayList<>();
+
+		try (ArchiveReader reader = ArchiveReader.open(archive)) {
+			String name;
+			while ((name = reader.nextFile()) != null) {
+				if (!isImportable(name)) {
+					continue;
+				}
+				inFlight.acquireUninterruptibly();
+				SpooledText content;
+				try {
+					content = SpooledText.read(reader.entry());
+				} catch (IOException e) {
+					inFlight.release();
+					throw e;
+				}
+				String fileName = name;
+				names.add(fileName);
+				results.add(executor.submit(() -> {
+					try {
+						return importEntry(content, fileName);
+					} finally {
+						content.close();
+						inFlight.release();
+					}
+				}));
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		List<String> imported = new ArrayList<>();
+		List<String> failed = new ArrayList<>();
+		for (int i = 0; i < results.size(); i++) {
+			if (waitFor(results.get(i))) {
+				imported.add(names.get(i));
+			} else {
+				failed.add(names.get(i));
+			}
+		}
+		ImportReport report = new ImportReport(imported, failed, 0, businessObj.getDedupReport().since(before),
+				System.currentTimeMillis() - start);
+		LOGGER.info(archive.getFileName() + ": " + report);
+		return report;
+	}
+
+	private boolean isImportable(String name) {
+		String extension = businessObj.getFileExtension(name);
+		return extension.equalsIgnoreCase("txt") || extension.equalsIgnoreCase("md5");
+	}
+
+	private boolean importEntry(SpooledText content, String fileName) throws IOException {
+		if (content.isSpooled()) {
+			return businessObj.importTextFiles(content.getFile().toFile(), fileName);
+		}
+		try (InputStream input = content.openStream()) {
+			return businessObj.importTextFiles(input, fileName);
+		}
+	}
+
+	private boolean waitFor(Future<Boolean> result) {
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getCause().getMessage());
+			return false;
+		}
+	}
+}
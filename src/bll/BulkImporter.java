@@ -0,0 +1,157 @@
+package bll;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import dto.DedupReport;
+import dto.ImportReport;
+import pl.EditorPO;
+
+/**
+ * Imports every text file under a directory without the editor window, on the
+ * workers of an {@link ImportService}. Each file that is stored is appended to
+ * a journal, so running the same import again after it was interrupted only
+ * imports the files that were not stored yet. A file that changed since it was
+ * journaled, or that failed, is imported again.
+ *
+ * A journal line is {@code size <tab> lastModified <tab> absolute path}.
+ */
+public class BulkImporter {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+	private static final long PROGRESS_INTERVAL_MS = 5000;
+
+	private final IEditorBO businessObj;
+	private final int threads;
+	private final Path journal;
+	private final PrintStream out;
+
+	public BulkImporter(IEditorBO businessObj, int threads, Path journal, PrintStream out) {
+		this.businessObj = businessObj;
+		this.threads = threads;
+		this.journal = journal;
+		this.out = out;
+	}
+
+	/**
+	 * Imports the files under {@code root} not in the journal yet and prints the
+	 * report and throughput once they are done.
+	 */
+	public ImportReport importDirectory(Path root) throws IOException {
+		List<Path> found = findFiles(root);
+		Set<String> journaled = readJournal();
+		List<File> files = new ArrayList<>();
+		for (Path path : found) {
+			if (!journaled.contains(journalEntry(path))) {
+				files.add(path.toFile());
+			}
+		}
+		out.println(found.size() + " file(s) found, " + (found.size() - files.size())
+				+ " already imported according to " + journal);
+		if (files.isEmpty()) {
+			return new ImportReport(Collections.emptyList(), Collections.emptyList(), 0, new DedupReport(0, 0, 0, 0), 0);
+		}
+
+		DedupReport before = businessObj.getDedupReport();
+		AtomicLong importedBytes = new AtomicLong();
+		AtomicLong lastProgress = new AtomicLong(System.currentTimeMillis());
+		long start = System.currentTimeMillis();
+		ImportService service = new ImportService(businessObj, threads);
+		ImportReport report;
+		try (BufferedWriter writer = Files.newBufferedWriter(journal, StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+			report = service.importFiles(files, new ImportService.Listener() {
+				@Override
+				public void fileStarted(File file) {
+				}
+
+				@Override
+				public void fileFinished(File file, boolean imported, int completed, int total) {
+					if (imported) {
+						importedBytes.addAndGet(file.length());
+						record(writer, file.toPath());
+					}
+					long now = System.currentTimeMillis();
+					long last = lastProgress.get();
+					if (now - last >= PROGRESS_INTERVAL_MS && lastProgress.compareAndSet(last, now)) {
+						out.println(completed + " of " + total + " file(s) done, "
+								+ rate(completed, now - start) + " files/s");
+					}
+				}
+			});
+		} finally {
+			service.shutdown();
+		}
+
+		long elapsed = Math.max(1, report.getElapsedMillis());
+		DedupReport stored = businessObj.getDedupReport().since(before);
+		out.println(report);
+		out.println("Throughput: " + rate(report.getImported().size(), elapsed) + " files/s, "
+				+ rate(stored.getStoredPages(), elapsed) + " pages/s, "
+				+ rate(importedBytes.get() / (1024.0 * 1024.0), elapsed) + " MB/s");
+		return report;
+	}
+
+	/**
+	 * Regular files under {@code root} that can be imported, in path order so a
+	 * resumed run goes through them in the same order.
+	 */
+	private List<Path> findFiles(Path root) throws IOException {
+		try (Stream<Path> paths = Files.walk(root)) {
+			return paths.filter(Files::isRegularFile).filter(this::isImportable).sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+	private boolean isImportable(Path path) {
+		String extension = businessObj.getFileExtension(path.getFileName().toString());
+		return extension.equalsIgnoreCase("txt") || extension.equalsIgnoreCase("md5");
+	}
+
+	private Set<String> readJournal() throws IOException {
+		Set<String> entries = new HashSet<>();
+		if (Files.exists(journal)) {
+			// A line cut short by an interrupted write just does not match any file
+			entries.addAll(Files.readAllLines(journal, StandardCharsets.UTF_8));
+		}
+		return entries;
+	}
+
+	// Flushed per file, so an interrupted run keeps every file it stored
+	private synchronized void record(Writer writer, Path path) {
+		try {
+			writer.write(journalEntry(path));
+			writer.write(System.lineSeparator());
+			writer.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+		}
+	}
+
+	private String journalEntry(Path path) {
+		File file = path.toAbsolutePath().normalize().toFile();
+		return file.length() + "\t" + file.lastModified() + "\t" + file.getPath();
+	}
+
+	private String rate(double amount, long elapsedMillis) {
+		return String.format("%.1f", amount * 1000.0 / Math.max(1, elapsedMillis));
+	}
+}
@@ -1,9 +1,9 @@
 package bll;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -11,8 +11,10 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import dal.IFacadeDAO;
+import dto.DedupReport;
 import dto.Documents;
 import dto.Pages;
+import dto.UpdateConflictException;
 import pl.EditorPO;
 
 public class EditorBO implements IEditorBO {
@@ -46,6 +48,24 @@ public class EditorBO implements IEditorBO {
 		}
 	}
 
+	/**
+	 * Saves a page loaded at {@code version}. Conflicts are passed on to the
+	 * caller, any other failure returns -1.
+	 */
+	@Override
+	public int updateFile(int id, String fileName, int pageNumber, String content, int version)
+			throws UpdateConflictException {
+		try {
+			return db.updateFileInDB(id, fileName, pageNumber, content, version);
+		} catch (UpdateConflictException e) {
+			throw e;
+		} catch (Exception e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return -1;
+		}
+	}
+
 	@Override
 	public boolean deleteFile(int id) {
 		try {
@@ -57,22 +77,38 @@ public class EditorBO implements IEditorBO {
 		}
 	}
 
+	@Override
+	public boolean deleteFiles(Collection<Integer> ids) {
+		try {
+			return db.deleteFilesInDB(ids);
+		} catch (Exception e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return false;
+		}
+	}
+
 	@Override
 	public boolean importTextFiles(File file, String fileName) {
-		StringBuilder fileContent = new StringBuilder();
 		String fileExtension = getFileExtension(fileName);
-		BufferedReader reader;
 		try {
-			reader = new BufferedReader(new FileReader(file));
-			String line;
-
-			while ((line = reader.readLine()) != null) {
-				fileContent.append(line).append("\n");
+			if (fileExtension.equalsIgnoreCase("txt") || fileExtension.equalsIgnoreCase("md5")) {
+				// The file is read as UTF-8 and stored as it is read, not loaded whole
+				return db.createFileInDB(fileName, file.toPath());
 			}
-			reader.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+		}
+		return false;
+	}
 
+	@Override
+	public boolean importTextFiles(InputStream input, String fileName) {
+		String fileExtension = getFileExtension(fileName);
+		try {
 			if (fileExtension.equalsIgnoreCase("txt") || fileExtension.equalsIgnoreCase("md5")) {
-				return db.createFileInDB(fileName, fileContent.toString());
+				return db.createFileInDB(fileName, input);
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -83,13 +119,12 @@ public class EditorBO implements IEditorBO {
 
 	@Override
 	public Documents getFile(int id) {
-		List<Documents> docs = getAllFiles();
-		for (int i = 0; i < docs.size(); i++) {
-			if (id == docs.get(i).getId()) {
-				return docs.get(i);
-			}
-		}
-		return null;
+		return db.getFileFromDB(id);
+	}
+
+	@Override
+	public List<Pages> getPages(int fileId, int fromPage, int toPage) {
+		return db.getPagesFromDB(fileId, fromPage, toPage);
 	}
 
 	@Override
@@ -103,6 +138,16 @@ public class EditorBO implements IEditorBO {
 		return db.getFilesFromDB();
 	}
 
+	@Override
+	public Map<Integer, String> getAnalysisStatuses() {
+		return db.getAnalysisStatuses();
+	}
+
+	@Override
+	public DedupReport getDedupReport() {
+		return db.getDedupReport();
+	}
+
 	@Override
 	public String transliterate(int pageId, String arabicText) {
 		return db.transliterateInDB(pageId, arabicText);
@@ -110,8 +155,10 @@ public class EditorBO implements IEditorBO {
 
 	@Override
 	public List<String> searchKeyword(String keyword) {
-
-		return SearchWord.searchKeyword(keyword, getAllFiles());
+		SearchWord.validateKeyword(keyword);
+		List<String> results = new ArrayList<>();
+		db.forEachDocument(doc -> SearchWord.searchDocument(keyword, doc, results));
+		return results;
 	}
 
 	@Override
@@ -132,6 +179,11 @@ public class EditorBO implements IEditorBO {
 		return db.extractRoots(text);
 	}
 
+	@Override
+	public double getTfIdfScore(int fileId) {
+		return db.getTfIdfScore(fileId);
+	}
+
 	@Override
 	public double performTFIDF(List<String> unSelectedDocsContent, String selectedDocContent) {
 		return db.performTFIDF(unSelectedDocsContent, selectedDocContent);
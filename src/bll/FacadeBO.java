@@ -1,10 +1,15 @@
 package bll;
 
 import java.io.File;
+import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import dto.DedupReport;
 import dto.Documents;
+import dto.Pages;
+import dto.UpdateConflictException;
 
 public class FacadeBO implements IFacadeBO {
 
@@ -26,30 +31,61 @@ public class FacadeBO implements IFacadeBO {
 		return bo.updateFile(id, fileName, pageNumber, content);
 	}
 
+	@Override
+	public int updateFile(int id, String fileName, int pageNumber, String content, int version)
+			throws UpdateConflictException {
+		return bo.updateFile(id, fileName, pageNumber, content, version);
+	}
+
 	@Override
 	public boolean deleteFile(int id) {
 		// TODO Auto-generated method stub
 		return bo.deleteFile(id);
 	}
 
+	@Override
+	public boolean deleteFiles(Collection<Integer> ids) {
+		return bo.deleteFiles(ids);
+	}
+
 	@Override
 	public boolean importTextFiles(File file, String fileName) {
 		// TODO Auto-generated method stub
 		return bo.importTextFiles(file, fileName);
 	}
 
+	@Override
+	public boolean importTextFiles(InputStream input, String fileName) {
+		return bo.importTextFiles(input, fileName);
+	}
+
 	@Override
 	public Documents getFile(int id) {
 		// TODO Auto-generated method stub
 		return bo.getFile(id);
 	}
 
+	@Override
+	public List<Pages> getPages(int fileId, int fromPage, int toPage) {
+		return bo.getPages(fileId, fromPage, toPage);
+	}
+
 	@Override
 	public List<Documents> getAllFiles() {
 		// TODO Auto-generated method stub
 		return bo.getAllFiles();
 	}
 
+	@Override
+	public Map<Integer, String> getAnalysisStatuses() {
+		return bo.getAnalysisStatuses();
+	}
+
+	@Override
+	public DedupReport getDedupReport() {
+		return bo.getDedupReport();
+	}
+
 	@Override
 	public String getFileExtension(String fileName) {
 		// TODO Auto-generated method stub
@@ -84,6 +120,11 @@ public class FacadeBO implements IFacadeBO {
 		return bo.extractRoots(text);
 	}
 
+	@Override
+	public double getTfIdfScore(int fileId) {
+		return bo.getTfIdfScore(fileId);
+	}
+
 	@Override
 	public double performTFIDF(List<String> unSelectedDocsContent, String selectedDocContent) {
 		// TODO Auto-generated method stub
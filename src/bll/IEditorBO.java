@@ -1,24 +1,45 @@
 package bll;
 
 import java.io.File;
+import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import dto.DedupReport;
 import dto.Documents;
+import dto.Pages;
+import dto.UpdateConflictException;
 
 public interface IEditorBO {
 	boolean createFile(String nameOfFile, String content);
 
 	boolean updateFile(int id, String fileName, int pageNumber, String content);
 
+	int updateFile(int id, String fileName, int pageNumber, String content, int version)
+			throws UpdateConflictException;
+
 	boolean deleteFile(int id);
 
+	boolean deleteFiles(Collection<Integer> ids);
+
 	boolean importTextFiles(File file, String fileName);
 
+	/**
+	 * Imports UTF-8 text read from {@code input}, which the caller closes.
+	 */
+	boolean importTextFiles(InputStream input, String fileName);
+
 	Documents getFile(int id);
 
+	List<Pages> getPages(int fileId, int fromPage, int toPage);
+
 	List<Documents> getAllFiles();
 
+	Map<Integer, String> getAnalysisStatuses();
+
+	DedupReport getDedupReport();
+
 	String getFileExtension(String fileName);
 
 	String transliterate(int pageId, String arabicText);
@@ -31,6 +52,8 @@ public interface IEditorBO {
 
 	Map<String, String> extractRoots(String text);
 
+	double getTfIdfScore(int fileId);
+
 	double performTFIDF(List<String> unSelectedDocsContent, String selectedDocContent);
 
 	Map<String, Double> performPMI(String content);
@@ -0,0 +1,145 @@
+package bll;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import dto.DedupReport;
+import dto.ImportReport;
+import pl.EditorPO;
+
+/**
+ * Imports many files at once on a fixed number of worker threads. Each file is
+ * imported on its own through {@link IEditorBO#importTextFiles(File, String)},
+ * so one failing file does not stop the others, and the caller gets a single
+ * {@link ImportReport} at the end instead of a message per file.
+ *
+ * Cancelling lets the files already being imported finish, since each of them
+ * is stored in its own transaction, and skips the ones not started yet.
+ */
+public class ImportService {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+
+	/**
+	 * Progress callbacks. They are called on the worker threads, so a UI has to
+	 * hand them over to its own thread.
+	 */
+	public interface Listener {
+		void fileStarted(File file);
+
+		/**
+		 * @param completed files finished so far, including this one
+		 * @param total     files in the import
+		 */
+		void fileFinished(File file, boolean imported, int completed, int total);
+	}
+
+	private enum Outcome {
+		IMPORTED, FAILED, CANCELLED
+	}
+
+	private final IEditorBO businessObj;
+	private final ExecutorService executor;
+	private final AtomicBoolean cancelled = new AtomicBoolean();
+
+	public ImportService(IEditorBO businessObj) {
+		this(businessObj, Runtime.getRuntime().availableProcessors());
+	}
+
+	public ImportService(IEditorBO businessObj, int threads) {
+		this.businessObj = businessObj;
+		AtomicInteger threadCount = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+			Thread thread = new Thread(runnable, "import-worker-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Imports {@code files} and waits until all of them are done or skipped.
+	 */
+	public ImportReport importFiles(List<File> files, Listener listener) {
+		long start = System.currentTimeMillis();
+		DedupReport before = businessObj.getDedupReport();
+		AtomicInteger completed = new AtomicInteger();
+		int total = files.size();
+
+		List<Future<Outcome>> results = new ArrayList<>(total);
+		for (File file : files) {
+			results.add(executor.submit(() -> {
+				if (cancelled.get()) {
+					return Outcome.CANCELLED;
+				}
+				listener.fileStarted(file);
+				boolean imported = importFile(file);
+				listener.fileFinished(file, imported, completed.incrementAndGet(), total);
+				return imported ? Outcome.IMPORTED : Outcome.FAILED;
+			}));
+		}
+
+		// Collected in the order the files were given, whatever order they finished in
+		List<String> imported = new ArrayList<>();
+		List<String> failed = new ArrayList<>();
+		int skipped = 0;
+		for (int i = 0; i < total; i++) {
+			Outcome outcome = waitFor(results.get(i));
+			if (outcome == Outcome.IMPORTED) {
+				imported.add(files.get(i).getName());
+			} else if (outcome == Outcome.FAILED) {
+				failed.add(files.get(i).getName());
+			} else {
+				skipped++;
+			}
+		}
+		cancelled.set(false);
+
+		ImportReport report = new ImportReport(imported, failed, skipped,
+				businessObj.getDedupReport().since(before), System.currentTimeMillis() - start);
+		LOGGER.info(report.toString());
+		return report;
+	}
+
+	/**
+	 * Stops the running import after the files already in progress.
+	 */
+	public void cancel() {
+		cancelled.set(true);
+	}
+
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	private boolean importFile(File file) {
+		try {
+			return businessObj.importTextFiles(file, file.getName());
+		} catch (Exception e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return false;
+		}
+	}
+
+	private Outcome waitFor(Future<Outcome> result) {
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			cancel();
+			return Outcome.CANCELLED;
+		} catch (ExecutionException e) {
+			LOGGER.error(e.getCause().getMessage());
+			return Outcome.FAILED;
+		}
+	}
+}
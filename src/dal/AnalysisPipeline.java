@@ -0,0 +1,125 @@
+package dal;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Analyses pages in parallel and writes the results through one
+ * {@link PageAnalyticsWriter}. Transliteration and the word analyses of each
+ * page run on a shared fork-join pool; the rows are written by the thread that
+ * owns the writer's connection, in the order the pages were submitted, so they
+ * stay part of its transaction and a failure still rolls back the whole file.
+ *
+ * At most {@code maxInFlight} pages are analysed or waiting to be written at a
+ * time, which bounds the memory used whatever the number of pages.
+ *
+ * Analyses borrow pooled connections of their own for words new to the
+ * dictionary while the writing thread holds one, so writers take a slot with
+ * {@link #acquireWriter()} before borrowing their connection. There are
+ * {@code db.pool.maxSize} less the analysis threads slots, which leaves the
+ * analyses enough connections however many threads import at once.
+ */
+class AnalysisPipeline implements AutoCloseable {
+	private static ForkJoinPool POOL;
+	private static Semaphore WRITERS;
+
+	private final PageAnalyticsWriter writer;
+	private final int maxInFlight;
+	private final Deque<CompletableFuture<PageAnalyticsWriter.PageAnalysis>> pending = new ArrayDeque<>();
+
+	AnalysisPipeline(PageAnalyticsWriter writer) {
+		this.writer = writer;
+		this.maxInFlight = 4 * pool().getParallelism();
+	}
+
+	/**
+	 * Threads analysing pages, set by {@code analytics.threads}. Each one may hold
+	 * a pooled connection for new words, so by default they leave a few of
+	 * {@code db.pool.maxSize} to the threads writing.
+	 */
+	private static synchronized ForkJoinPool pool() {
+		if (POOL == null) {
+			DatabaseConnection db = DatabaseConnection.getInstance();
+			int fallback = Math.min(Runtime.getRuntime().availableProcessors(),
+					Math.max(1, db.getIntProperty("db.pool.maxSize", 8) - 2));
+			POOL = new ForkJoinPool(Math.max(1, db.getIntProperty("analytics.threads", fallback)));
+		}
+		return POOL;
+	}
+
+	/**
+	 * Waits for a writer slot; call before borrowing the connection that analysis
+	 * results are written on, and {@link #releaseWriter()} after returning it.
+	 */
+	static void acquireWriter() {
+		writers().acquireUninterruptibly();
+	}
+
+	static void releaseWriter() {
+		writers().release();
+	}
+
+	private static synchronized Semaphore writers() {
+		if (WRITERS == null) {
+			int maxSize = DatabaseConnection.getInstance().getPool().getMaxSize();
+			WRITERS = new Semaphore(Math.max(1, maxSize - pool().getParallelism()), true);
+		}
+		return WRITERS;
+	}
+
+	void submit(int pageId, String pageContent) throws SQLException {
+		pending.add(CompletableFuture.supplyAsync(() -> {
+			try {
+				return PageAnalyticsWriter.analyse(pageId, pageContent);
+			} catch (SQLException e) {
+				throw new CompletionException(e);
+			}
+		}, pool()));
+
+		// Write whatever is done at the front, and wait when too much is queued
+		while (!pending.isEmpty() && (pending.size() > maxInFlight || pending.peek().isDone())) {
+			writeNext();
+		}
+	}
+
+	/**
+	 * Writes the rows of every submitted page and flushes the writer.
+	 */
+	void finish() throws SQLException {
+		while (!pending.isEmpty()) {
+			writeNext();
+		}
+		writer.flush();
+	}
+
+	private void writeNext() throws SQLException {
+		PageAnalyticsWriter.PageAnalysis analysis;
+		try {
+			analysis = pending.poll().join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SQLException) {
+				throw (SQLException) cause;
+			}
+			throw new SQLException("Page analysis failed: " + cause.getMessage(), cause);
+		}
+		writer.add(analysis);
+	}
+
+	/**
+	 * Drops pages not written yet, after a failure. Analyses already running
+	 * finish on their own and their results are discarded.
+	 */
+	@Override
+	public void close() {
+		for (CompletableFuture<PageAnalyticsWriter.PageAnalysis> analysis : pending) {
+			analysis.cancel(false);
+		}
+		pending.clear();
+	}
+}
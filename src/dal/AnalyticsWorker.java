@@ -0,0 +1,274 @@
+package dal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import pl.EditorPO;
+
+/**
+ * Background worker for write-behind analytics. Imports commit their files and
+ * pages straight away and record one row per page in {@code analysis_jobs};
+ * this worker drains those rows, fills the analytics tables and removes each
+ * job once its page has been analysed. Jobs live in the database, so work left
+ * over when the application stops is picked up on the next start.
+ *
+ * A chunk of jobs is claimed as RUNNING in a short transaction of its own, and
+ * its pages are read without locking them, so a save never waits for an
+ * analysis. A save of a page whose job is claimed puts the job back to PENDING;
+ * the worker only removes jobs still RUNNING for the page version it analysed,
+ * and leaves the others to be analysed again. A claim older than
+ * {@code analytics.claimTimeoutMs}, left by a worker that stopped, is taken
+ * over.
+ */
+public class AnalyticsWorker {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+	private static AnalyticsWorker INSTANCE;
+
+	private final ScheduledExecutorService executor;
+	private final int chunkSize;
+	private final int maxAttempts;
+	private final int batchSize;
+	private final long claimTimeout;
+
+	private AnalyticsWorker() {
+		DatabaseConnection db = DatabaseConnection.getInstance();
+		chunkSize = db.getIntProperty("analytics.chunkSize", 50);
+		maxAttempts = db.getIntProperty("analytics.maxAttempts", 3);
+		batchSize = db.getIntProperty("db.batchSize", 1000);
+		claimTimeout = db.getIntProperty("analytics.claimTimeoutMs", 600000);
+		long pollInterval = db.getIntProperty("analytics.pollIntervalMs", 5000);
+
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "analytics-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleWithFixedDelay(this::drain, 0, pollInterval, TimeUnit.MILLISECONDS);
+	}
+
+	public static synchronized AnalyticsWorker getInstance() {
+		if (INSTANCE == null) {
+			INSTANCE = new AnalyticsWorker();
+		}
+		return INSTANCE;
+	}
+
+	public static boolean isEnabled() {
+		return Boolean.parseBoolean(DatabaseConnection.getInstance().getProperty("analytics.writeBehind", "false"));
+	}
+
+	/**
+	 * Asks the worker to look for new jobs now instead of at the next poll.
+	 */
+	public void wakeUp() {
+		executor.execute(this::drain);
+	}
+
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Returns a human readable analysis status per file. Files without pending or
+	 * failed jobs are not included and should be treated as complete.
+	 */
+	public static Map<Integer, String> getStatuses(Connection conn) throws SQLException {
+		Map<Integer, String> statuses = new HashMap<>();
+		String query = "SELECT fileId, SUM(status <> 'FAILED') AS pending, SUM(status = 'FAILED') AS failed "
+				+ "FROM analysis_jobs GROUP BY fileId";
+		try (PreparedStatement stmt = conn.prepareStatement(query); ResultSet rs = stmt.executeQuery()) {
+			while (rs.next()) {
+				int pending = rs.getInt("pending");
+				int failed = rs.getInt("failed");
+				if (pending > 0) {
+					statuses.put(rs.getInt("fileId"), "Analyzing (" + pending + " pages left)");
+				} else if (failed > 0) {
+					statuses.put(rs.getInt("fileId"), "Failed (" + failed + " pages)");
+				}
+			}
+		}
+		return statuses;
+	}
+
+	private void drain() {
+		try {
+			while (processNextChunk()) {
+				// keep going until no pending jobs are left
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			LOGGER.error("Analytics worker: " + e.getMessage());
+		}
+	}
+
+	private boolean processNextChunk() throws SQLException {
+		AnalysisPipeline.acquireWriter();
+		try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+			conn.setAutoCommit(false);
+			Map<Integer, String> pages = new LinkedHashMap<>();
+			Map<Integer, Integer> versions = new HashMap<>();
+			List<Integer> claimed = claim(conn);
+			if (claimed.isEmpty()) {
+				return false;
+			}
+			// Read without a lock; a save meanwhile is caught when the results are written
+			String pageQuery = "SELECT pageId, pageContent, pageContentZ, version FROM pages WHERE pageId IN ("
+					+ placeholders(claimed.size()) + ") ORDER BY pageId";
+			try (PreparedStatement stmt = conn.prepareStatement(pageQuery)) {
+				setIds(stmt, claimed);
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						pages.put(rs.getInt("pageId"), PageCodec.getInstance().read(rs, "pageContent", "pageContentZ"));
+						versions.put(rs.getInt("pageId"), rs.getInt("version"));
+					}
+				}
+			}
+			conn.commit();
+			if (pages.isEmpty()) {
+				// Deleted since they were claimed, along with their jobs
+				return true;
+			}
+
+			try {
+				analyze(conn, pages, versions);
+			} catch (Exception e) {
+				conn.rollback();
+				LOGGER.error("Analytics failed for pages " + pages.keySet() + ": " + e.getMessage());
+				retryOneByOne(conn, pages, versions);
+			}
+			return true;
+		} finally {
+			AnalysisPipeline.releaseWriter();
+		}
+	}
+
+	/**
+	 * Marks the next chunk of pending jobs, or of jobs whose claim timed out, as
+	 * RUNNING and commits, so only the job rows are locked and only briefly.
+	 */
+	private List<Integer> claim(Connection conn) throws SQLException {
+		String pendingQuery = "SELECT pageId FROM analysis_jobs WHERE status = 'PENDING' "
+				+ "OR (status = 'RUNNING' AND claimedAt < ?) ORDER BY pageId LIMIT ? FOR UPDATE";
+		List<Integer> claimed = new ArrayList<>();
+		try (PreparedStatement stmt = conn.prepareStatement(pendingQuery)) {
+			stmt.setTimestamp(1, new Timestamp(System.currentTimeMillis() - claimTimeout));
+			stmt.setInt(2, chunkSize);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					claimed.add(rs.getInt("pageId"));
+				}
+			}
+		}
+		if (!claimed.isEmpty()) {
+			try (PreparedStatement stmt = conn.prepareStatement("UPDATE analysis_jobs SET status = 'RUNNING', "
+					+ "claimedAt = CURRENT_TIMESTAMP WHERE pageId IN (" + placeholders(claimed.size()) + ")")) {
+				setIds(stmt, claimed);
+				stmt.executeUpdate();
+			}
+		}
+		conn.commit();
+		return claimed;
+	}
+
+	private void analyze(Connection conn, Map<Integer, String> pages, Map<Integer, Integer> versions)
+			throws SQLException {
+		try (PageAnalyticsWriter writer = new PageAnalyticsWriter(conn, batchSize);
+				AnalysisPipeline pipeline = new AnalysisPipeline(writer)) {
+			writer.deleteExisting(pages.keySet());
+			for (Map.Entry<Integer, String> page : pages.entrySet()) {
+				pipeline.submit(page.getKey(), page.getValue());
+			}
+			pipeline.finish();
+			finishJobs(conn, pages.keySet(), versions);
+			conn.commit();
+		}
+	}
+
+	/**
+	 * Removes the jobs of pages still at the version that was analysed. A page
+	 * saved since keeps its job, so it is analysed again with its new content.
+	 * The pages are already locked here, through the foreign keys of the
+	 * analytics just written, before their jobs are; a save locks its page
+	 * before its job too, so the two wait for each other instead of deadlocking.
+	 */
+	private void finishJobs(Connection conn, Collection<Integer> pageIds, Map<Integer, Integer> versions)
+			throws SQLException {
+		Map<Integer, Integer> current = new HashMap<>();
+		try (PreparedStatement stmt = conn.prepareStatement(
+				"SELECT pageId, version FROM pages WHERE pageId IN (" + placeholders(pageIds.size()) + ")")) {
+			setIds(stmt, pageIds);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					current.put(rs.getInt("pageId"), rs.getInt("version"));
+				}
+			}
+		}
+		try (PreparedStatement doneStmt = conn
+				.prepareStatement("DELETE FROM analysis_jobs WHERE pageId = ? AND status = 'RUNNING'");
+				PreparedStatement requeueStmt = conn.prepareStatement(
+						"UPDATE analysis_jobs SET status = 'PENDING' WHERE pageId = ? AND status = 'RUNNING'")) {
+			for (Integer pageId : pageIds) {
+				PreparedStatement stmt = versions.get(pageId).equals(current.get(pageId)) ? doneStmt : requeueStmt;
+				stmt.setInt(1, pageId);
+				stmt.addBatch();
+			}
+			doneStmt.executeBatch();
+			requeueStmt.executeBatch();
+		}
+	}
+
+	/**
+	 * Isolates the page that made a chunk fail, so the other pages of the chunk
+	 * still get analysed.
+	 */
+	private void retryOneByOne(Connection conn, Map<Integer, String> pages, Map<Integer, Integer> versions)
+			throws SQLException {
+		for (Map.Entry<Integer, String> page : pages.entrySet()) {
+			try {
+				analyze(conn, Collections.singletonMap(page.getKey(), page.getValue()), versions);
+			} catch (Exception e) {
+				conn.rollback();
+				markFailed(conn, page.getKey(), e.getMessage());
+			}
+		}
+	}
+
+	private void markFailed(Connection conn, int pageId, String error) throws SQLException {
+		String query = "UPDATE analysis_jobs SET status = IF(attempts + 1 >= ?, 'FAILED', 'PENDING'), "
+				+ "attempts = attempts + 1, lastError = ? WHERE pageId = ? AND status = 'RUNNING'";
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			stmt.setInt(1, maxAttempts);
+			stmt.setString(2, error);
+			stmt.setInt(3, pageId);
+			stmt.executeUpdate();
+		}
+		conn.commit();
+	}
+
+	private static String placeholders(int count) {
+		return String.join(", ", Collections.nCopies(count, "?"));
+	}
+
+	private static void setIds(PreparedStatement stmt, Collection<Integer> ids) throws SQLException {
+		int index = 1;
+		for (Integer id : ids) {
+			stmt.setInt(index++, id);
+		}
+	}
+}
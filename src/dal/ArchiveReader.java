@@ -0,0 +1,294 @@
+package dal;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads the files in a ZIP or TAR archive one after the other, straight from
+ * the archive, without extracting them. TAR archives may be gzipped
+ * ({@code .tar.gz}, {@code .tgz}); long names in GNU and POSIX (pax) form are
+ * understood. Directories, links and other special entries are passed over.
+ *
+ * Entries come in archive order and only the current one can be read, so a
+ * caller that wants to work on several at once has to read them in first.
+ */
+public abstract class ArchiveReader implements Closeable {
+	private static final int BLOCK_SIZE = 512;
+
+	/**
+	 * Opens {@code archive}, telling the format from its name.
+	 */
+	public static ArchiveReader open(Path archive) throws IOException {
+		String name = archive.getFileName().toString().toLowerCase(Locale.ROOT);
+		InputStream input = new BufferedInputStream(Files.newInputStream(archive));
+		try {
+			if (name.endsWith(".zip")) {
+				return new Zip(input);
+			} else if (name.endsWith(".tar")) {
+				return new Tar(input);
+			} else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+				return new Tar(new GZIPInputStream(input));
+			}
+		} catch (IOException e) {
+			input.close();
+			throw e;
+		}
+		input.close();
+		throw new IOException("Unsupported archive: " + archive.getFileName());
+	}
+
+	public static boolean isArchive(Path path) {
+		String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+		return name.endsWith(".zip") || name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz");
+	}
+
+	/**
+	 * Moves to the next file in the archive and returns its path inside the
+	 * archive, or {@code null} when there are no more.
+	 */
+	public abstract String nextFile() throws IOException;
+
+	/**
+	 * The content of the current file. It ends with the file; closing it does not
+	 * close the archive.
+	 */
+	public abstract InputStream entry();
+
+	private static class Zip extends ArchiveReader {
+		private final ZipInputStream zip;
+
+		Zip(InputStream input) {
+			zip = new ZipInputStream(input, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public String nextFile() throws IOException {
+			ZipEntry entry;
+			while ((entry = zip.getNextEntry()) != null) {
+				if (!entry.isDirectory()) {
+					return entry.getName();
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public InputStream entry() {
+			return new FilterInputStream(zip) {
+				@Override
+				public void close() {
+					// The next entry is read from the same stream
+				}
+			};
+		}
+
+		@Override
+		public void close() throws IOException {
+			zip.close();
+		}
+	}
+
+	private static class Tar extends ArchiveReader {
+		private final InputStream input;
+		private final byte[] header = new byte[BLOCK_SIZE];
+		// Bytes of the current entry not read yet, and the padding after it
+		private long remaining;
+		private long padding;
+
+		Tar(InputStream input) {
+			this.input = input;
+		}
+
+		@Override
+		public String nextFile() throws IOException {
+			String longName = null;
+			while (true) {
+				skip(remaining + padding);
+				remaining = 0;
+				padding = 0;
+				if (!readBlock(header)) {
+					return null;
+				}
+				if (isZeroBlock(header)) {
+					// Two zero blocks end the archive; one is enough to stop at
+					return null;
+				}
+				long size = number(header, 124, 12);
+				char type = (char) header[156];
+				remaining = size;
+				padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+
+				if (type == 'L') {
+					// GNU: the name of the next entry, too long for its header
+					longName = trimNul(new String(readEntry(), StandardCharsets.UTF_8));
+				} else if (type == 'x') {
+					String path = paxPath(new String(readEntry(), StandardCharsets.UTF_8));
+					if (path != null) {
+						longName = path;
+					}
+				} else if (type == '0' || type == '\0' || type == '7') {
+					return longName != null ? longName : headerName();
+				} else {
+					longName = null;
+				}
+			}
+		}
+
+		@Override
+		public InputStream entry() {
+			return new InputStream() {
+				@Override
+				public int read() throws IOException {
+					if (remaining <= 0) {
+						return -1;
+					}
+					int b = input.read();
+					if (b < 0) {
+						throw new EOFException("Archive ends inside an entry");
+					}
+					remaining--;
+					return b;
+				}
+
+				@Override
+				public int read(byte[] buffer, int offset, int length) throws IOException {
+					if (remaining <= 0) {
+						return -1;
+					}
+					int read = input.read(buffer, offset, (int) Math.min(length, remaining));
+					if (read < 0) {
+						throw new EOFException("Archive ends inside an entry");
+					}
+					remaining -= read;
+					return read;
+				}
+			};
+		}
+
+		@Override
+		public void close() throws IOException {
+			input.close();
+		}
+
+		private String headerName() {
+			String name = field(header, 0, 100);
+			// ustar keeps the leading directories of a long path in the prefix field
+			if (header[257] == 'u' && header[258] == 's' && header[259] == 't' && header[260] == 'a'
+					&& header[261] == 'r') {
+				String prefix = field(header, 345, 155);
+				if (!prefix.isEmpty()) {
+					name = prefix + "/" + name;
+				}
+			}
+			return name;
+		}
+
+		private byte[] readEntry() throws IOException {
+			if (remaining > Integer.MAX_VALUE) {
+				throw new IOException("Archive header entry is too large");
+			}
+			byte[] content = new byte[(int) remaining];
+			int offset = 0;
+			while (offset < content.length) {
+				int read = input.read(content, offset, content.length - offset);
+				if (read < 0) {
+					throw new EOFException("Archive ends inside an entry");
+				}
+				offset += read;
+			}
+			remaining = 0;
+			return content;
+		}
+
+		private boolean readBlock(byte[] block) throws IOException {
+			int offset = 0;
+			while (offset < block.length) {
+				int read = input.read(block, offset, block.length - offset);
+				if (read < 0) {
+					if (offset == 0) {
+						return false;
+					}
+					throw new EOFException("Archive ends inside a header");
+				}
+				offset += read;
+			}
+			return true;
+		}
+
+		private void skip(long count) throws IOException {
+			while (count > 0) {
+				long skipped = input.skip(count);
+				if (skipped <= 0) {
+					if (input.read() < 0) {
+						throw new EOFException("Archive ends inside an entry");
+					}
+					skipped = 1;
+				}
+				count -= skipped;
+			}
+		}
+	}
+
+	private static boolean isZeroBlock(byte[] block) {
+		for (byte b : block) {
+			if (b != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String field(byte[] block, int offset, int length) {
+		return trimNul(new String(block, offset, length, StandardCharsets.UTF_8));
+	}
+
+	private static String trimNul(String value) {
+		int end = value.indexOf('\0');
+		return end < 0 ? value : value.substring(0, end);
+	}
+
+	/**
+	 * A size or other number: octal text, or big-endian binary after a 0x80 byte
+	 * for values too large for it.
+	 */
+	private static long number(byte[] block, int offset, int length) throws IOException {
+		if ((block[offset] & 0x80) != 0) {
+			long value = 0;
+			for (int i = offset + 1; i < offset + length; i++) {
+				value = (value << 8) | (block[i] & 0xff);
+			}
+			return value;
+		}
+		String text = field(block, offset, length).trim();
+		try {
+			return text.isEmpty() ? 0 : Long.parseLong(text, 8);
+		} catch (NumberFormatException e) {
+			throw new IOException("Not a TAR archive, invalid number in header: " + text);
+		}
+	}
+
+	/**
+	 * The {@code path} record of a pax header, whose records read
+	 * {@code "<length> <key>=<value>\n"}.
+	 */
+	private static String paxPath(String records) {
+		for (String record : records.split("\n")) {
+			int space = record.indexOf(' ');
+			if (space >= 0 && record.startsWith("path=", space + 1)) {
+				return record.substring(space + 1 + "path=".length());
+			}
+		}
+		return null;
+	}
+}
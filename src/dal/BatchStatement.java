@@ -0,0 +1,42 @@
+package dal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Wraps a PreparedStatement and sends its rows to the server in batches of
+ * {@code batchSize}, so inserts for many pages share a few round trips.
+ */
+class BatchStatement implements AutoCloseable {
+	private final PreparedStatement stmt;
+	private final int batchSize;
+	private int pending = 0;
+
+	BatchStatement(Connection conn, String query, int batchSize) throws SQLException {
+		this.stmt = conn.prepareStatement(query);
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	void add(Object... params) throws SQLException {
+		for (int i = 0; i < params.length; i++) {
+			stmt.setObject(i + 1, params[i]);
+		}
+		stmt.addBatch();
+		if (++pending >= batchSize) {
+			flush();
+		}
+	}
+
+	void flush() throws SQLException {
+		if (pending > 0) {
+			stmt.executeBatch();
+			pending = 0;
+		}
+	}
+
+	@Override
+	public void close() throws SQLException {
+		stmt.close();
+	}
+}
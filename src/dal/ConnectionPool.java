@@ -0,0 +1,281 @@
+package dal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import pl.EditorPO;
+
+/**
+ * Bounded JDBC connection pool. Connections handed out by {@link #borrow()} are
+ * returned to the pool when the caller closes them, so DAO code can simply use
+ * try-with-resources. Each physical connection keeps a {@link StatementCache},
+ * which bounds the number of open statements to roughly
+ * {@code maxSize * statementCacheSize} plus those currently in use.
+ */
+public class ConnectionPool {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+
+	private final String url;
+	private final String username;
+	private final String password;
+	private final int maxSize;
+	private final long borrowTimeoutMillis;
+	private final long validationIntervalMillis;
+	private final int validationTimeoutSeconds;
+	private final int statementCacheSize;
+	private final AtomicInteger openStatements = new AtomicInteger();
+
+	private final Semaphore permits;
+	private final LinkedBlockingDeque<IdleConnection> idle = new LinkedBlockingDeque<>();
+	private volatile boolean closed = false;
+
+	public ConnectionPool(String url, String username, String password, int maxSize, int minIdle,
+			long borrowTimeoutMillis, long validationIntervalMillis, int validationTimeoutSeconds,
+			int statementCacheSize) {
+		this.url = url;
+		this.username = username;
+		this.password = password;
+		this.maxSize = Math.max(1, maxSize);
+		this.borrowTimeoutMillis = borrowTimeoutMillis;
+		this.validationIntervalMillis = validationIntervalMillis;
+		this.validationTimeoutSeconds = validationTimeoutSeconds;
+		this.statementCacheSize = statementCacheSize;
+		this.permits = new Semaphore(this.maxSize, true);
+
+		for (int i = 0; i < Math.min(minIdle, this.maxSize); i++) {
+			try {
+				idle.offerFirst(new IdleConnection(connect()));
+			} catch (SQLException e) {
+				e.printStackTrace();
+				LOGGER.error(e.getMessage());
+				break;
+			}
+		}
+	}
+
+	public Connection borrow() throws SQLException {
+		if (closed) {
+			throw new SQLException("Connection pool is closed");
+		}
+		try {
+			if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				throw new SQLException("Timed out waiting for a database connection after " + borrowTimeoutMillis
+						+ " ms (pool size " + maxSize + ")");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection", e);
+		}
+
+		try {
+			return wrap(takeIdleOrCreate());
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	private StatementCache takeIdleOrCreate() throws SQLException {
+		IdleConnection candidate;
+		while ((candidate = idle.pollFirst()) != null) {
+			if (isUsable(candidate)) {
+				return candidate.pooled;
+			}
+			discard(candidate.pooled);
+		}
+		return connect();
+	}
+
+	private StatementCache connect() throws SQLException {
+		return new StatementCache(DriverManager.getConnection(url, username, password), statementCacheSize,
+				openStatements);
+	}
+
+	private boolean isUsable(IdleConnection candidate) {
+		try {
+			if (candidate.pooled.getConnection().isClosed()) {
+				return false;
+			}
+			if (System.currentTimeMillis() - candidate.idleSince < validationIntervalMillis) {
+				return true;
+			}
+			return candidate.pooled.getConnection().isValid(validationTimeoutSeconds);
+		} catch (SQLException e) {
+			LOGGER.warn("Discarding pooled connection: " + e.getMessage());
+			return false;
+		}
+	}
+
+	private void release(StatementCache pooled, boolean broken) {
+		Connection physical = pooled.getConnection();
+		try {
+			pooled.reclaim();
+			if (closed || broken || pooled.isBroken() || physical.isClosed()) {
+				discard(pooled);
+				return;
+			}
+			if (!physical.getAutoCommit()) {
+				physical.rollback();
+				physical.setAutoCommit(true);
+			}
+			idle.offerFirst(new IdleConnection(pooled));
+		} catch (SQLException e) {
+			LOGGER.warn("Discarding pooled connection on release: " + e.getMessage());
+			discard(pooled);
+		} finally {
+			permits.release();
+		}
+	}
+
+	private Connection wrap(StatementCache pooled) {
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new PooledConnectionHandler(pooled));
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	public int getActiveCount() {
+		return maxSize - permits.availablePermits();
+	}
+
+	/**
+	 * Number of physical statements currently open across all pooled
+	 * connections, cached or in use.
+	 */
+	public int getOpenStatementCount() {
+		return openStatements.get();
+	}
+
+	public void close() {
+		closed = true;
+		IdleConnection candidate;
+		while ((candidate = idle.pollFirst()) != null) {
+			discard(candidate.pooled);
+		}
+	}
+
+	private static void discard(StatementCache pooled) {
+		pooled.closeAll();
+		try {
+			pooled.getConnection().close();
+		} catch (SQLException e) {
+			LOGGER.warn(e.getMessage());
+		}
+	}
+
+	static boolean isFatal(SQLException e) {
+		String state = e.getSQLState();
+		return state != null && state.startsWith("08");
+	}
+
+	private static class IdleConnection {
+		final StatementCache pooled;
+		final long idleSince;
+
+		IdleConnection(StatementCache pooled) {
+			this.pooled = pooled;
+			this.idleSince = System.currentTimeMillis();
+		}
+	}
+
+	private class PooledConnectionHandler implements InvocationHandler {
+		private final StatementCache pooled;
+		private final Connection physical;
+		private boolean returned = false;
+		private boolean broken = false;
+
+		PooledConnectionHandler(StatementCache pooled) {
+			this.pooled = pooled;
+			this.physical = pooled.getConnection();
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("close".equals(name)) {
+				synchronized (this) {
+					if (!returned) {
+						returned = true;
+						release(pooled, broken);
+					}
+				}
+				return null;
+			}
+			if ("isClosed".equals(name)) {
+				return returned || physical.isClosed();
+			}
+			if ("equals".equals(name)) {
+				return proxy == args[0];
+			}
+			if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			}
+			if ("toString".equals(name)) {
+				return "Pooled" + physical;
+			}
+			if (returned) {
+				throw new SQLException("Connection has already been returned to the pool");
+			}
+			if ("prepareStatement".equals(name)) {
+				return prepare((Connection) proxy, method, args);
+			}
+			try {
+				return method.invoke(physical, args);
+			} catch (InvocationTargetException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof SQLException && isFatal((SQLException) cause)) {
+					broken = true;
+				}
+				throw cause;
+			}
+		}
+
+		/**
+		 * Plain and generated-keys statements are cached per SQL text; statements
+		 * with other options are still tracked but closed for real.
+		 */
+		private Object prepare(Connection proxy, Method method, Object[] args) throws Throwable {
+			String key = null;
+			if (args.length == 1) {
+				key = (String) args[0];
+			} else if (args.length == 2 && args[1] instanceof Integer
+					&& method.getParameterTypes()[1] == int.class) {
+				key = args[1] + ":" + args[0];
+			}
+			try {
+				return pooled.prepare(proxy, key, connection -> {
+					try {
+						return (PreparedStatement) method.invoke(connection, args);
+					} catch (InvocationTargetException | IllegalAccessException e) {
+						Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+						throw cause instanceof SQLException ? (SQLException) cause : new SQLException(cause);
+					}
+				});
+			} catch (SQLException e) {
+				if (isFatal(e)) {
+					broken = true;
+				}
+				throw e;
+			}
+		}
+	}
+}
@@ -1,9 +1,12 @@
 package dal;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -15,25 +18,53 @@ import java.io.IOException;
 
 public class DatabaseConnection {
     private static DatabaseConnection INSTANCE;
-    private Connection connection;
+    private ConnectionPool pool;
+    private List<ConnectionPool> readPools = new ArrayList<>();
+    private final AtomicInteger nextReadPool = new AtomicInteger();
+    private AtomicLongArray readPoolDownUntil;
+    private long readAfterWriteMillis;
+    private long readRetryMillis;
+    private volatile long lastWriteMillis = 0;
+    private Properties properties = new Properties();
     private String url;
     private String username;
     private String password;
     final Logger LOGGER = LogManager.getLogger(EditorPO.class);
 
     private DatabaseConnection() {
-        try {
-            FileInputStream propertiesInput = new FileInputStream("config.properties");
-            Properties properties = new Properties();
+        try (FileInputStream propertiesInput = new FileInputStream("config.properties")) {
             properties.load(propertiesInput);
-            url = properties.getProperty("db.url");
-            username = properties.getProperty("db.username");
-            password = properties.getProperty("db.password");
-            connection = DriverManager.getConnection(url, username, password);
-        } catch (IOException | SQLException e) {
+        } catch (IOException e) {
             e.printStackTrace();
             LOGGER.error(e.getMessage());
         }
+        url = properties.getProperty("db.url");
+        username = properties.getProperty("db.username");
+        password = properties.getProperty("db.password");
+        pool = createPool(url, username, password);
+
+        // Optional read replicas, comma separated; reads fall back to the primary
+        String readUrls = getProperty("db.read.url", "");
+        String readUsername = getProperty("db.read.username", username);
+        String readPassword = getProperty("db.read.password", password);
+        for (String readUrl : readUrls.split(",")) {
+            if (!readUrl.trim().isEmpty()) {
+                readPools.add(createPool(readUrl.trim(), readUsername, readPassword));
+            }
+        }
+        readPoolDownUntil = new AtomicLongArray(readPools.size());
+        readAfterWriteMillis = getIntProperty("db.read.afterWriteMs", 5000);
+        readRetryMillis = getIntProperty("db.read.retryMs", 30000);
+    }
+
+    private ConnectionPool createPool(String url, String username, String password) {
+        return new ConnectionPool(url, username, password,
+                getIntProperty("db.pool.maxSize", 8),
+                getIntProperty("db.pool.minIdle", 0),
+                getIntProperty("db.pool.borrowTimeoutMs", 30000),
+                getIntProperty("db.pool.validationIntervalMs", 30000),
+                getIntProperty("db.pool.validationTimeoutSeconds", 2),
+                getIntProperty("db.pool.statementCacheSize", 50));
     }
 
     public static synchronized DatabaseConnection getInstance() {
@@ -43,18 +74,73 @@ public class DatabaseConnection {
         return INSTANCE;
     }
 
-    public Connection getConnection() {
-        return connection;
+    /**
+     * Borrows a connection from the pool. Callers must close it (preferably with
+     * try-with-resources) to hand it back.
+     */
+    public Connection getConnection() throws SQLException {
+        return pool.borrow();
     }
 
-    public void closeConnection() {
-        if (connection != null) {
+    /**
+     * Borrows a connection for a read-only query. With {@code db.read.url} set
+     * this is a replica, picked round robin, unless something was written less
+     * than {@code db.read.afterWriteMs} ago: replication is asynchronous, so for
+     * that long reads stay on the primary and see the write. A replica that
+     * fails is skipped for {@code db.read.retryMs}, and the primary is used if
+     * no replica is available.
+     */
+    public Connection getReadConnection() throws SQLException {
+        long now = System.currentTimeMillis();
+        if (readPools.isEmpty() || now - lastWriteMillis < readAfterWriteMillis) {
+            return getConnection();
+        }
+        int start = Math.floorMod(nextReadPool.getAndIncrement(), readPools.size());
+        for (int i = 0; i < readPools.size(); i++) {
+            int index = (start + i) % readPools.size();
+            if (readPoolDownUntil.get(index) > now) {
+                continue;
+            }
             try {
-                connection.close();
+                return readPools.get(index).borrow();
             } catch (SQLException e) {
-                e.printStackTrace();
-                LOGGER.error(e.getMessage());
+                LOGGER.warn("Read replica unavailable, using the primary: " + e.getMessage());
+                readPoolDownUntil.set(index, now + readRetryMillis);
             }
         }
+        return getConnection();
+    }
+
+    /**
+     * Records that a write was committed on the primary, so following reads are
+     * not served from a replica that may not have it yet.
+     */
+    public void markWrite() {
+        lastWriteMillis = System.currentTimeMillis();
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    public String getProperty(String key, String defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : value.trim();
+    }
+
+    public int getIntProperty(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(getProperty(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid value for " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public void closeConnection() {
+        pool.close();
+        for (ConnectionPool readPool : readPools) {
+            readPool.close();
+        }
     }
-}
\ No newline at end of file
+}
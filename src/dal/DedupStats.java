@@ -0,0 +1,39 @@
+package dal;
+
+import dto.DedupReport;
+
+/**
+ * Running totals of the import work saved by deduplication, and of the pages
+ * stored, kept per DAO.
+ */
+class DedupStats {
+	private int skippedFiles;
+	private int linkedFiles;
+	private int reusedPages;
+	private long reusedCharacters;
+	private int storedPages;
+	private long storedCharacters;
+
+	synchronized void recordSkipped(int pages, long characters) {
+		skippedFiles++;
+		reusedPages += pages;
+		reusedCharacters += characters;
+	}
+
+	synchronized void recordLinked(int pages, long characters) {
+		linkedFiles++;
+		reusedPages += pages;
+		reusedCharacters += characters;
+	}
+
+	// Every file whose pages were written, whether its analytics were reused or not
+	synchronized void recordStored(int pages, long characters) {
+		storedPages += pages;
+		storedCharacters += characters;
+	}
+
+	synchronized DedupReport snapshot() {
+		return new DedupReport(skippedFiles, linkedFiles, reusedPages, reusedCharacters, storedPages,
+				storedCharacters);
+	}
+}
@@ -0,0 +1,429 @@
+package dal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Corpus statistics for TF-IDF, kept up to date as files are imported, saved
+ * and deleted: the number of files containing each term ({@code term_df}), the
+ * terms of each file with their occurrences ({@code file_terms}), and the
+ * number of files and of changes made to the corpus ({@code corpus_stats}).
+ * Scoring a document reads only the frequencies of its own terms, instead of
+ * reading and tokenizing the whole corpus, and a stored file can be scored
+ * again without reading its text.
+ *
+ * Changes are made on the caller's connection, so they commit or roll back
+ * with the file they belong to.
+ */
+public class DocumentFrequencyStore {
+	private static DocumentFrequencyStore INSTANCE;
+	private static final int LOOKUP_CHUNK = 500;
+	// Length of the term columns; longer terms are stored cut, which at worst
+	// counts two very long terms as one
+	private static final int MAX_TERM_LENGTH = 255;
+
+	private volatile boolean built;
+
+	private DocumentFrequencyStore() {
+	}
+
+	public static synchronized DocumentFrequencyStore getInstance() {
+		if (INSTANCE == null) {
+			INSTANCE = new DocumentFrequencyStore();
+		}
+		return INSTANCE;
+	}
+
+	/**
+	 * Fills the statistics from the stored files if they were never built, as
+	 * after upgrading a database that already has files. Call before opening
+	 * the transaction that changes a file.
+	 */
+	public void ensureBuilt() throws SQLException {
+		if (built) {
+			return;
+		}
+		synchronized (this) {
+			if (built) {
+				return;
+			}
+			try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+				conn.setAutoCommit(false);
+				try {
+					// Claims the build; another client doing the same waits on the row
+					// and then finds it there
+					boolean claimed;
+					try (PreparedStatement stmt = conn
+							.prepareStatement("INSERT IGNORE INTO corpus_stats (id, documentCount) VALUES (1, 0)")) {
+						claimed = stmt.executeUpdate() > 0;
+					}
+					if (claimed) {
+						rebuild(conn);
+					}
+					conn.commit();
+				} catch (SQLException e) {
+					conn.rollback();
+					throw e;
+				}
+			}
+			built = true;
+		}
+	}
+
+	/**
+	 * The corpus of all stored files, with the frequencies of {@code terms}.
+	 */
+	public TFIDFCalculator corpus(Connection conn, Collection<String> terms) throws SQLException {
+		return new TFIDFCalculator(loadFrequencies(conn, terms), documentCount(conn));
+	}
+
+	/**
+	 * The corpus of all stored files but {@code fileId}, with the frequencies of
+	 * {@code terms}, for scoring a new version of that file against the others.
+	 */
+	public TFIDFCalculator corpusWithout(Connection conn, int fileId, Collection<String> terms)
+			throws SQLException {
+		Map<String, Integer> frequencies = loadFrequencies(conn, terms);
+		Set<String> own = fileTerms(conn, fileId);
+		for (String term : terms) {
+			if (own.contains(storedTerm(term))) {
+				frequencies.computeIfPresent(term, (key, count) -> count > 1 ? count - 1 : null);
+			}
+		}
+		return new TFIDFCalculator(frequencies, documentCount(conn) - (own.isEmpty() ? 0 : 1));
+	}
+
+	/**
+	 * Number of changes made to the corpus so far, which a score records to tell
+	 * later how far the corpus has drifted from the one it was computed against.
+	 */
+	public long getChangeCount(Connection conn) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement("SELECT changeCount FROM corpus_stats WHERE id = 1");
+				ResultSet rs = stmt.executeQuery()) {
+			return rs.next() ? rs.getLong("changeCount") : 0;
+		}
+	}
+
+	/**
+	 * Scores a stored file against the other files from its stored terms, and
+	 * returns the score with the change count it was computed at. Run it in a
+	 * transaction, so both come from the same snapshot.
+	 */
+	public Score score(Connection conn, int fileId) throws SQLException {
+		String query = "SELECT t.term, t.occurrences, d.docCount FROM file_terms t "
+				+ "LEFT JOIN term_df d ON d.term = t.term WHERE t.fileId = ?";
+		long changeCount = getChangeCount(conn);
+		int documents = documentCount(conn);
+
+		Map<String, Integer> counts = new HashMap<>();
+		Map<String, Integer> frequencies = new HashMap<>();
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			stmt.setInt(1, fileId);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					String term = rs.getString("term");
+					counts.put(term, rs.getInt("occurrences"));
+					// Without the file itself
+					int others = rs.getInt("docCount") - 1;
+					if (others > 0) {
+						frequencies.put(term, others);
+					}
+				}
+			}
+		}
+		if (counts.isEmpty()) {
+			return null;
+		}
+		return new Score(new TFIDFCalculator(frequencies, documents - 1).calculateTfIdf(counts), changeCount);
+	}
+
+	/**
+	 * Counts a new file with the given terms.
+	 */
+	public void addDocument(Connection conn, int fileId, TFIDFCalculator.DocumentTerms terms) throws SQLException {
+		Map<String, Integer> counts = storedCounts(terms);
+		TreeMap<String, Integer> changes = new TreeMap<>();
+		for (String term : counts.keySet()) {
+			changes.put(term, 1);
+		}
+		insertFileTerms(conn, fileId, counts);
+		applyChanges(conn, changes);
+		changeCorpus(conn, 1);
+	}
+
+	/**
+	 * Replaces the terms of a stored file by those of its new content. Only the
+	 * document frequencies of terms that were added or dropped change.
+	 */
+	public void replaceDocument(Connection conn, int fileId, TFIDFCalculator.DocumentTerms terms)
+			throws SQLException {
+		Set<String> old = fileTerms(conn, fileId);
+		if (old.isEmpty()) {
+			addDocument(conn, fileId, terms);
+			return;
+		}
+		Map<String, Integer> counts = storedCounts(terms);
+
+		TreeMap<String, Integer> changes = new TreeMap<>();
+		for (String term : counts.keySet()) {
+			if (!old.contains(term)) {
+				changes.put(term, 1);
+			}
+		}
+		for (String term : old) {
+			if (!counts.containsKey(term)) {
+				changes.put(term, -1);
+			}
+		}
+		// Occurrences change with almost any edit, so the file's rows are rewritten
+		try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM file_terms WHERE fileId = ?")) {
+			stmt.setInt(1, fileId);
+			stmt.executeUpdate();
+		}
+		insertFileTerms(conn, fileId, counts);
+		applyChanges(conn, changes);
+		changeCorpus(conn, 0);
+	}
+
+	/**
+	 * Stops counting the given files. Call before deleting them; their
+	 * {@code file_terms} rows go with them through the foreign key.
+	 */
+	public void removeDocuments(Connection conn, List<Integer> fileIds) throws SQLException {
+		if (fileIds.isEmpty()) {
+			return;
+		}
+		String placeholders = String.join(", ", Collections.nCopies(fileIds.size(), "?"));
+		TreeMap<String, Integer> changes = new TreeMap<>();
+		try (PreparedStatement stmt = conn.prepareStatement("SELECT term, COUNT(*) AS files FROM file_terms "
+				+ "WHERE fileId IN (" + placeholders + ") GROUP BY term")) {
+			for (int i = 0; i < fileIds.size(); i++) {
+				stmt.setInt(i + 1, fileIds.get(i));
+			}
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					changes.put(rs.getString("term"), -rs.getInt("files"));
+				}
+			}
+		}
+		int documents;
+		try (PreparedStatement stmt = conn.prepareStatement(
+				"SELECT COUNT(DISTINCT fileId) FROM file_terms WHERE fileId IN (" + placeholders + ")")) {
+			for (int i = 0; i < fileIds.size(); i++) {
+				stmt.setInt(i + 1, fileIds.get(i));
+			}
+			try (ResultSet rs = stmt.executeQuery()) {
+				rs.next();
+				documents = rs.getInt(1);
+			}
+		}
+		applyChanges(conn, changes);
+		if (documents > 0) {
+			changeCorpus(conn, -documents);
+		}
+	}
+
+	private void rebuild(Connection conn) throws SQLException {
+		String query = "SELECT fileId, pageContent, pageContentZ FROM pages ORDER BY fileId, pageNumber";
+		int batchSize = DatabaseConnection.getInstance().getIntProperty("db.batchSize", 1000);
+		Map<String, Integer> frequencies = new HashMap<>();
+		int documents = 0;
+
+		// Streamed on a second connection, since the first one writes meanwhile
+		try (Connection readConn = DatabaseConnection.getInstance().getConnection();
+				PreparedStatement stmt = readConn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY,
+						ResultSet.CONCUR_READ_ONLY);
+				BatchStatement termStmt = new BatchStatement(conn,
+						"INSERT INTO file_terms (fileId, term, occurrences) VALUES (?, ?, ?)", batchSize)) {
+			stmt.setFetchSize(DatabaseConnection.getInstance().getIntProperty("db.stream.fetchSize", 100));
+			try (ResultSet rs = stmt.executeQuery()) {
+				int fileId = -1;
+				TFIDFCalculator.DocumentTerms terms = null;
+				while (true) {
+					boolean more = rs.next();
+					if (terms != null && (!more || rs.getInt("fileId") != fileId)) {
+						for (Map.Entry<String, Integer> term : storedCounts(terms).entrySet()) {
+							termStmt.add(fileId, term.getKey(), term.getValue());
+							frequencies.merge(term.getKey(), 1, Integer::sum);
+						}
+						documents++;
+						terms = null;
+					}
+					if (!more) {
+						break;
+					}
+					if (terms == null) {
+						fileId = rs.getInt("fileId");
+						terms = new TFIDFCalculator.DocumentTerms();
+					}
+					terms.add(PageCodec.getInstance().read(rs, "pageContent", "pageContentZ"));
+				}
+			}
+			termStmt.flush();
+		}
+
+		try (BatchStatement frequencyStmt = new BatchStatement(conn,
+				"INSERT INTO term_df (term, docCount) VALUES (?, ?)", batchSize)) {
+			for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+				frequencyStmt.add(entry.getKey(), entry.getValue());
+			}
+			frequencyStmt.flush();
+		}
+		try (PreparedStatement stmt = conn
+				.prepareStatement("UPDATE corpus_stats SET documentCount = ?, changeCount = ? WHERE id = 1")) {
+			stmt.setInt(1, documents);
+			stmt.setLong(2, documents);
+			stmt.executeUpdate();
+		}
+		// Scores stored before the statistics were kept are computed once more
+		// against them
+		try (PreparedStatement stmt = conn.prepareStatement("UPDATE tfidf SET stale = 1")) {
+			stmt.executeUpdate();
+		}
+	}
+
+	private Map<String, Integer> loadFrequencies(Connection conn, Collection<String> terms) throws SQLException {
+		Map<String, List<String>> byStoredTerm = new HashMap<>();
+		for (String term : terms) {
+			byStoredTerm.computeIfAbsent(storedTerm(term), key -> new ArrayList<>()).add(term);
+		}
+		List<String> stored = new ArrayList<>(byStoredTerm.keySet());
+
+		Map<String, Integer> frequencies = new HashMap<>();
+		for (int from = 0; from < stored.size(); from += LOOKUP_CHUNK) {
+			List<String> chunk = stored.subList(from, Math.min(from + LOOKUP_CHUNK, stored.size()));
+			String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+			try (PreparedStatement stmt = conn.prepareStatement(
+					"SELECT term, docCount FROM term_df WHERE docCount > 0 AND term IN (" + placeholders + ")")) {
+				for (int i = 0; i < chunk.size(); i++) {
+					stmt.setString(i + 1, chunk.get(i));
+				}
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						for (String term : byStoredTerm.get(rs.getString("term"))) {
+							frequencies.put(term, rs.getInt("docCount"));
+						}
+					}
+				}
+			}
+		}
+		return frequencies;
+	}
+
+	private int documentCount(Connection conn) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement("SELECT documentCount FROM corpus_stats WHERE id = 1");
+				ResultSet rs = stmt.executeQuery()) {
+			return rs.next() ? rs.getInt("documentCount") : 0;
+		}
+	}
+
+	private Set<String> fileTerms(Connection conn, int fileId) throws SQLException {
+		Set<String> terms = new HashSet<>();
+		try (PreparedStatement stmt = conn.prepareStatement("SELECT term FROM file_terms WHERE fileId = ?")) {
+			stmt.setInt(1, fileId);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					terms.add(rs.getString("term"));
+				}
+			}
+		}
+		return terms;
+	}
+
+	private void insertFileTerms(Connection conn, int fileId, Map<String, Integer> counts) throws SQLException {
+		int batchSize = DatabaseConnection.getInstance().getIntProperty("db.batchSize", 1000);
+		try (BatchStatement stmt = new BatchStatement(conn,
+				"INSERT INTO file_terms (fileId, term, occurrences) VALUES (?, ?, ?)", batchSize)) {
+			for (Map.Entry<String, Integer> term : counts.entrySet()) {
+				stmt.add(fileId, term.getKey(), term.getValue());
+			}
+			stmt.flush();
+		}
+	}
+
+	/**
+	 * Adds each change to the count of its term. The terms are written in sorted
+	 * order, so concurrent imports sharing terms wait for each other instead of
+	 * deadlocking.
+	 */
+	private void applyChanges(Connection conn, TreeMap<String, Integer> changes) throws SQLException {
+		int batchSize = DatabaseConnection.getInstance().getIntProperty("db.batchSize", 1000);
+		List<String> dropped = new ArrayList<>();
+		try (BatchStatement stmt = new BatchStatement(conn, "INSERT INTO term_df (term, docCount) VALUES (?, ?) "
+				+ "ON DUPLICATE KEY UPDATE docCount = docCount + VALUES(docCount)", batchSize)) {
+			for (Map.Entry<String, Integer> change : changes.entrySet()) {
+				stmt.add(change.getKey(), change.getValue());
+				if (change.getValue() < 0) {
+					dropped.add(change.getKey());
+				}
+			}
+			stmt.flush();
+		}
+		try (BatchStatement stmt = new BatchStatement(conn, "DELETE FROM term_df WHERE term = ? AND docCount <= 0",
+				batchSize)) {
+			for (String term : dropped) {
+				stmt.add(term);
+			}
+			stmt.flush();
+		}
+	}
+
+	// Last, so the one corpus_stats row is locked only until the commit. Every
+	// file added, saved or removed is one change.
+	private void changeCorpus(Connection conn, int documents) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement("UPDATE corpus_stats SET documentCount = documentCount + ?, "
+				+ "changeCount = changeCount + ? WHERE id = 1")) {
+			stmt.setInt(1, documents);
+			stmt.setInt(2, Math.max(1, Math.abs(documents)));
+			stmt.executeUpdate();
+		}
+	}
+
+	private static Map<String, Integer> storedCounts(TFIDFCalculator.DocumentTerms terms) {
+		Map<String, Integer> counts = new HashMap<>();
+		for (Map.Entry<String, Integer> term : terms.getTermCounts().entrySet()) {
+			counts.merge(storedTerm(term.getKey()), term.getValue(), Integer::sum);
+		}
+		return counts;
+	}
+
+	private static String storedTerm(String term) {
+		if (term.length() <= MAX_TERM_LENGTH) {
+			return term;
+		}
+		int end = Character.isHighSurrogate(term.charAt(MAX_TERM_LENGTH - 1)) ? MAX_TERM_LENGTH - 1 : MAX_TERM_LENGTH;
+		return term.substring(0, end);
+	}
+
+	/**
+	 * A score and the change count of the corpus it was computed against.
+	 */
+	public static class Score {
+		private final double value;
+		private final long changeCount;
+
+		Score(double value, long changeCount) {
+			this.value = value;
+			this.changeCount = changeCount;
+		}
+
+		public double getValue() {
+			return value;
+		}
+
+		public long getChangeCount() {
+			return changeCount;
+		}
+	}
+}
@@ -1,459 +1,661 @@
 package dal;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import dto.DedupReport;
 import dto.Documents;
 import dto.Pages;
+import dto.UpdateConflictException;
 import pl.EditorPO;
 
 public class EditorDBDAO implements IEditorDBDAO {
 	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
-	Connection conn = null;
+	private static final DedupStats DEDUP_STATS = new DedupStats();
+	private static final int LOCK_STRIPES = 64;
+	private static final int MAX_BLIND_ATTEMPTS = 3;
+	private static final StripedLocks FILE_LOCKS = new StripedLocks(LOCK_STRIPES);
+	private static final StripedLocks IMPORT_LOCKS = new StripedLocks(LOCK_STRIPES);
+
+	private final Paginator paginator = Paginator.fromConfig();
 
 	public EditorDBDAO() {
-		this.conn = DatabaseConnection.getInstance().getConnection();
+		if (AnalyticsWorker.isEnabled()) {
+			// Resume any analytics jobs left over from a previous run
+			AnalyticsWorker.getInstance();
+		}
+		if (TfIdfRefresher.isEnabled()) {
+			TfIdfRefresher.getInstance();
+		}
+	}
 
+	@Override
+	public boolean createFileInDB(String nameOfFile, String content) {
+		return createFile(nameOfFile, () -> new StringReader(content));
 	}
 
+	/**
+	 * Streams the file in: it is read once to hash it, once more to compare it
+	 * with a stored file of the same hash if there is one, and once to store it a
+	 * batch of pages at a time. Memory use does not grow with the file size.
+	 */
 	@Override
-	public synchronized boolean createFileInDB(String nameOfFile, String content) {
-		String hash = null;
-		List<Pages> pages = null;
+	public boolean createFileInDB(String nameOfFile, Path file) {
+		return createFile(nameOfFile, () -> new MappedTextReader(file));
+	}
 
-		String insertQuery = "INSERT INTO files (fileName, fileHash) VALUES (?, ?)";
-		String pageQuery = "INSERT INTO pages (fileId, pageNumber, pageContent) VALUES (?, ?, ?)";
-		String transliterateQuery = "INSERT INTO transliteratedpages (pageId, transliteratedText) VALUES (?, ?)";
-		;
-		String posQuery = "INSERT INTO pos (pageId, word, pos) VALUES (?, ?, ?)";
-		String lemmaQuery = "INSERT INTO lemmatization (pageId, word, lemma) VALUES (?, ?, ?)";
-		String rootQuery = "INSERT INTO rootextraction (pageId, word, root) VALUES (?, ?, ?)";
-		String stemQuery = "INSERT INTO stemmation (pageId, word, stem) VALUES (?, ?, ?)";
-		String segmentQuery = "INSERT INTO wordsegementation (pageId, word, segment) VALUES (?, ?, ?)";
-		String tfidfQuery = "INSERT INTO tfidf (fileId, tfidfScore) VALUES (?, ?)";
-		String pklQuery = "INSERT INTO pkl (pageId, word, pklScore) VALUES (?, ?, ?)";
-		String pmiQuery = "INSERT INTO pmi (pageId, word, pmiScore) VALUES (?, ?, ?)";
-		Map<String, String> analyticsMap = new HashMap<>();
-		Map<String, Double> scoreMap = new HashMap<>();
+	/**
+	 * The import reads its text more than once, so the stream is kept first: in
+	 * memory when it is small, otherwise in a temporary file that is then
+	 * streamed in like any other file.
+	 */
+	@Override
+	public boolean createFileInDB(String nameOfFile, InputStream input) {
+		try (SpooledText text = SpooledText.read(input)) {
+			if (text.isSpooled()) {
+				return createFileInDB(nameOfFile, text.getFile());
+			}
+			try (InputStream bytes = text.openStream()) {
+				return createFileInDB(nameOfFile, MappedTextReader.readAll(bytes));
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return false;
+		}
+	}
 
-//		PreparedStatement fileStmt = null;
-//		PreparedStatement transliteratetStmt = null;
-//		PreparedStatement posStmt = null;
-//		PreparedStatement lemmaStmt = null;
-//		PreparedStatement rootStmt = null;
-//		PreparedStatement segmentStmt = null;
-//		PreparedStatement stemStmt = null;
-//		PreparedStatement pklStmt = null;
-//		PreparedStatement pmiStmt = null;
-//		PreparedStatement tfidfStmt = null;
+	/**
+	 * Imports of the same content are serialized, so the duplicate check of the
+	 * second one sees the first; imports of different files run in parallel.
+	 */
+	private boolean createFile(String nameOfFile, TextSource source) {
+		Scan scan;
 		try {
-
-			hash = HashCalculator.calculateHash(content);
-			pages = PaginationDAO.paginate(content);
+			scan = scan(source);
 		} catch (Exception e) {
 			e.printStackTrace();
 			LOGGER.error(e.getMessage());
+			return false;
 		}
 
-		try (PreparedStatement fileStmt = conn.prepareStatement(insertQuery, PreparedStatement.RETURN_GENERATED_KEYS);
-				PreparedStatement pageStmt = conn.prepareStatement(pageQuery, PreparedStatement.RETURN_GENERATED_KEYS);
-				PreparedStatement transliteratetStmt = conn.prepareStatement(transliterateQuery);
-				PreparedStatement posStmt = conn.prepareStatement(posQuery);
-				PreparedStatement lemmaStmt = conn.prepareStatement(lemmaQuery);
-				PreparedStatement rootStmt = conn.prepareStatement(rootQuery);
-				PreparedStatement segmentStmt = conn.prepareStatement(segmentQuery);
-				PreparedStatement stemStmt = conn.prepareStatement(stemQuery);
-				PreparedStatement pklStmt = conn.prepareStatement(pklQuery);
-				PreparedStatement pmiStmt = conn.prepareStatement(pmiQuery);
-				PreparedStatement tfidfStmt = conn.prepareStatement(tfidfQuery)) {
-			conn = DatabaseConnection.getInstance().getConnection();
-			double tfidf = performTFIDF(getAllExistingFilesContent(conn), content);
-			conn.setAutoCommit(false);
+		// Analysed inline, the import holds its connection while the pages are analysed
+		boolean analyseInline = !AnalyticsWorker.isEnabled();
+		Lock lock = IMPORT_LOCKS.get(scan.hash);
+		lock.lock();
+		if (analyseInline) {
+			AnalysisPipeline.acquireWriter();
+		}
+		try {
+			return createFile(nameOfFile, source, scan);
+		} finally {
+			if (analyseInline) {
+				AnalysisPipeline.releaseWriter();
+			}
+			lock.unlock();
+		}
+	}
+
+	private boolean createFile(String nameOfFile, TextSource source, Scan scan) {
+		String insertQuery = "INSERT INTO files (fileName, fileHash) VALUES (?, ?)";
+		String pageQuery = "INSERT INTO pages (fileId, pageNumber, pageContent, pageContentZ) VALUES (?, ?, ?, ?)";
+		String tfidfQuery = "INSERT INTO tfidf (fileId, tfidfScore, scoredAt) VALUES (?, ?, ?)";
+		String copyTfidfQuery = "INSERT INTO tfidf (fileId, tfidfScore, scoredAt, stale) "
+				+ "SELECT ?, tfidfScore, scoredAt, stale FROM tfidf WHERE fileId = ?";
+		String jobQuery = "INSERT INTO analysis_jobs (pageId, fileId) VALUES (?, ?)";
+		boolean writeBehind = AnalyticsWorker.isEnabled();
+		int batchSize = DatabaseConnection.getInstance().getIntProperty("db.batchSize", 1000);
+
+		DocumentFrequencyStore frequencies = DocumentFrequencyStore.getInstance();
+		try {
+			// Before borrowing a connection, since a first build borrows its own
+			frequencies.ensureBuilt();
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return false;
+		}
 
-			// Insert into files table
-//			fileStmt = conn.prepareStatement(insertQuery, PreparedStatement.RETURN_GENERATED_KEYS);
-			fileStmt.setString(1, nameOfFile);
-			fileStmt.setString(2, hash);
-			fileStmt.executeUpdate();
-
-			ResultSet fileRS = fileStmt.getGeneratedKeys();
-			fileRS.next();
-			int fileID = fileRS.getInt(1);
-
-			for (Pages page : pages) {
-				// Insert into pages table
-//				pageStmt = conn.prepareStatement(pageQuery, PreparedStatement.RETURN_GENERATED_KEYS);
-				pageStmt.setInt(1, fileID);
-				pageStmt.setInt(2, page.getPageNumber());
-				pageStmt.setString(3, page.getPageContent());
-				pageStmt.executeUpdate();
-
-				ResultSet pageRS = pageStmt.getGeneratedKeys();
-				pageRS.next();
-				int pageId = pageRS.getInt(1);
-
-				// Transliteration
-				String transliteratedText = Transliteration.transliterate(page.getPageContent());
-//				transliteratetStmt = conn.prepareStatement(transliterateQuery);
-				transliteratetStmt.setInt(1, pageId);
-				transliteratetStmt.setString(2, transliteratedText);
-				transliteratetStmt.executeUpdate();
-
-				// POS Tagging
-				Map<String, List<String>> posTagsMap = POSTagger.extractPOS(page.getPageContent());
-
-//				posStmt = conn.prepareStatement(posQuery);
-
-				for (Map.Entry<String, List<String>> entry : posTagsMap.entrySet()) {
-					String word = entry.getKey();
-					List<String> posTags = entry.getValue();
-					String posTagString = String.join("|", posTags);
-
-					posStmt.setInt(1, pageId);
-					posStmt.setString(2, word);
-					posStmt.setString(3, posTagString);
-					posStmt.addBatch();
+		try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+			Duplicate duplicate = findDuplicate(conn, nameOfFile, scan.hash, source);
+			if (duplicate != null && duplicate.sameName) {
+				DEDUP_STATS.recordSkipped(scan.pages, scan.characters);
+				LOGGER.info(nameOfFile + " is already imported as file " + duplicate.fileId + ", skipping");
+				return true;
+			}
+
+			try (PreparedStatement fileStmt = conn.prepareStatement(insertQuery, PreparedStatement.RETURN_GENERATED_KEYS);
+					BatchStatement pageStmt = new BatchStatement(conn, pageQuery, batchSize);
+					PageAnalyticsWriter analyticsWriter = new PageAnalyticsWriter(conn, batchSize);
+					BatchStatement jobStmt = new BatchStatement(conn, jobQuery, batchSize);
+					PreparedStatement tfidfStmt = conn.prepareStatement(duplicate == null ? tfidfQuery : copyTfidfQuery);
+					AnalysisPipeline pipeline = new AnalysisPipeline(analyticsWriter);
+					Paginator.PageReader pageReader = paginator.pages(source.open())) {
+				conn.setAutoCommit(false);
+
+				// Insert into files table
+				fileStmt.setString(1, nameOfFile);
+				fileStmt.setString(2, scan.hash);
+				fileStmt.executeUpdate();
+
+				int fileID;
+				try (ResultSet fileRS = fileStmt.getGeneratedKeys()) {
+					fileRS.next();
+					fileID = fileRS.getInt(1);
 				}
-				posStmt.executeBatch();
 
-				analyticsMap = Lemmatization.lemmatizeWords(page.getPageContent());
+				// Insert the pages a batch at a time; unless the analytics can be copied,
+				// queue them for the background worker or analyse each batch in parallel
+				BatchStatement jobs = duplicate == null && writeBehind ? jobStmt : null;
+				AnalysisPipeline analytics = duplicate == null && !writeBehind ? pipeline : null;
+				TFIDFCalculator.DocumentTerms terms = new TFIDFCalculator.DocumentTerms();
+				List<Pages> batch = new ArrayList<>(batchSize);
+				Pages page;
+				while ((page = pageReader.next()) != null) {
+					batch.add(page);
+					terms.add(page.getPageContent());
+					if (batch.size() >= batchSize) {
+						insertPages(conn, fileID, batch, pageStmt, jobs, analytics);
+						batch.clear();
+					}
+				}
+				insertPages(conn, fileID, batch, pageStmt, jobs, analytics);
+
+				if (duplicate != null) {
+					// Same content under a new name: reuse the stored analytics and score
+					analyticsWriter.copyFile(duplicate.fileId, fileID);
+					tfidfStmt.setInt(1, fileID);
+					tfidfStmt.setInt(2, duplicate.fileId);
+					tfidfStmt.executeUpdate();
+					frequencies.addDocument(conn, fileID, terms);
+					conn.commit();
+					DatabaseConnection.getInstance().markWrite();
+					DEDUP_STATS.recordLinked(scan.pages, scan.characters);
+					DEDUP_STATS.recordStored(scan.pages, scan.characters);
+					LOGGER.info(nameOfFile + " has the same content as file " + duplicate.fileId
+							+ ", reused its analytics");
+					return true;
+				}
+				jobStmt.flush();
+				pipeline.finish();
+
+				// Scored against the files stored before it, then counted in the corpus
+				tfidfStmt.setInt(1, fileID);
+				tfidfStmt.setDouble(2, frequencies.corpus(conn, terms.getTerms()).calculateDocumentTfIdf(terms));
+				tfidfStmt.setLong(3, frequencies.getChangeCount(conn));
+				tfidfStmt.executeUpdate();
+				frequencies.addDocument(conn, fileID, terms);
+
+				conn.commit();
+				DatabaseConnection.getInstance().markWrite();
+				DEDUP_STATS.recordStored(scan.pages, scan.characters);
+				if (writeBehind) {
+					AnalyticsWorker.getInstance().wakeUp();
+				}
+				return true;
 
-//				lemmaStmt = conn.prepareStatement(lemmaQuery);
+			} catch (Exception e) {
+				rollback(conn);
+				e.printStackTrace();
+				LOGGER.error(e.getMessage());
+			}
+		} catch (SQLException | IOException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+		}
 
-				for (Map.Entry<String, String> entry : analyticsMap.entrySet()) {
-					String word = entry.getKey();
-					String lemma = entry.getValue();
-					String lemmaString = String.join("|", lemma);
+		return false;
+	}
 
-					lemmaStmt.setInt(1, pageId);
-					lemmaStmt.setString(2, word);
-					lemmaStmt.setString(3, lemmaString);
-					lemmaStmt.addBatch();
-				}
-				lemmaStmt.executeBatch();
-				analyticsMap = RootExtraction.extractRoots(page.getPageContent());
+	/**
+	 * Inserts one batch of pages, then queues a job for each of them on
+	 * {@code jobStmt} or hands them to {@code pipeline}, whichever is given.
+	 */
+	private void insertPages(Connection conn, int fileId, List<Pages> batch, BatchStatement pageStmt,
+			BatchStatement jobStmt, AnalysisPipeline pipeline) throws SQLException {
+		if (batch.isEmpty()) {
+			return;
+		}
+		PageCodec codec = PageCodec.getInstance();
+		for (Pages page : batch) {
+			pageStmt.add(fileId, page.getPageNumber(), codec.text(page.getPageContent()),
+					codec.blob(page.getPageContent()));
+		}
+		pageStmt.flush();
+		if (jobStmt == null && pipeline == null) {
+			return;
+		}
 
-//				rootStmt = conn.prepareStatement(rootQuery);
+		Map<Integer, Integer> pageIds = getPageIds(conn, fileId, batch.get(0).getPageNumber(),
+				batch.get(batch.size() - 1).getPageNumber());
+		for (Pages page : batch) {
+			int pageId = pageIds.get(page.getPageNumber());
+			if (jobStmt != null) {
+				jobStmt.add(pageId, fileId);
+			} else {
+				pipeline.submit(pageId, page.getPageContent());
+			}
+		}
+	}
 
-				for (Map.Entry<String, String> entry : analyticsMap.entrySet()) {
-					String word = entry.getKey();
-					String root = entry.getValue();
-					String rootString = String.join("|", root);
+	/**
+	 * Hash, page count and length of the text, from one pass over it.
+	 */
+	private Scan scan(TextSource source) throws Exception {
+		HashCalculator.TextDigest digest = new HashCalculator.TextDigest();
+		int pages = 0;
+		long characters = 0;
+		try (Paginator.PageReader pageReader = paginator.pages(source.open())) {
+			Pages page;
+			while ((page = pageReader.next()) != null) {
+				digest.update(page.getPageContent());
+				pages++;
+				characters += page.getPageContent().length();
+			}
+		}
+		return new Scan(digest.finish(), pages, characters);
+	}
 
-					rootStmt.setInt(1, pageId);
-					rootStmt.setString(2, word);
-					rootStmt.setString(3, rootString);
-					rootStmt.addBatch();
+	/**
+	 * Looks up an existing file with the same content through the indexed
+	 * {@code fileHash}. The stored hash is the one taken at import, so candidates
+	 * are only accepted if their text still matches the new content. A file with
+	 * the same name is preferred. Analytics are copied page by page, so a file is
+	 * only linked to if its pages also end where the new ones do, and never while
+	 * its analytics are still queued; skipping an import only needs the same text.
+	 */
+	private Duplicate findDuplicate(Connection conn, String fileName, String hash, TextSource source)
+			throws SQLException, IOException {
+		String query = "SELECT f.fileId, f.fileName = ? AS sameName, "
+				+ "EXISTS (SELECT 1 FROM analysis_jobs j WHERE j.fileId = f.fileId) AS queued "
+				+ "FROM files f WHERE f.fileHash = ? ORDER BY sameName DESC, f.fileId";
+		List<Duplicate> candidates = new ArrayList<>();
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			stmt.setString(1, fileName);
+			stmt.setString(2, hash);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					candidates.add(new Duplicate(rs.getInt("fileId"), rs.getBoolean("sameName"), rs.getBoolean("queued")));
 				}
-				rootStmt.executeBatch();
+			}
+		}
 
-				analyticsMap = WordSegmentation.extractSegments(page.getPageContent());
-//				segmentStmt = conn.prepareStatement(segmentQuery);
+		for (Duplicate candidate : candidates) {
+			if (!candidate.sameName && candidate.queued) {
+				continue;
+			}
+			Match match = compareWithStored(conn, candidate.fileId, source);
+			if (match == Match.SAME_PAGES || (candidate.sameName && match == Match.SAME_TEXT)) {
+				return candidate;
+			}
+		}
+		return null;
+	}
 
-				for (Map.Entry<String, String> entry : analyticsMap.entrySet()) {
-					String word = entry.getKey();
-					String segment = entry.getValue();
-					String segmentString = String.join("|", segment);
+	/**
+	 * Compares the text of a stored file with the new content character by
+	 * character, both read a page at a time, so files stored with other page
+	 * boundaries, as by an older paginator, still count as the same text.
+	 */
+	private Match compareWithStored(Connection conn, int fileId, TextSource source) throws SQLException, IOException {
+		String query = "SELECT pageContent, pageContentZ FROM pages WHERE fileId = ? ORDER BY pageNumber";
+		try (PreparedStatement stmt = conn.prepareStatement(query);
+				Paginator.PageReader pageReader = paginator.pages(source.open())) {
+			stmt.setInt(1, fileId);
+			stmt.setFetchSize(DatabaseConnection.getInstance().getIntProperty("db.stream.fetchSize", 100));
+			try (ResultSet rs = stmt.executeQuery()) {
+				PageText stored = new PageText(
+						() -> rs.next() ? PageCodec.getInstance().read(rs, "pageContent", "pageContentZ") : null);
+				PageText imported = new PageText(() -> {
+					Pages page = pageReader.next();
+					return page == null ? null : page.getPageContent();
+				});
+				int c;
+				do {
+					c = stored.next();
+					if (c != imported.next()) {
+						return Match.DIFFERENT;
+					}
+				} while (c >= 0);
+				return stored.lengths.equals(imported.lengths) ? Match.SAME_PAGES : Match.SAME_TEXT;
+			}
+		}
+	}
 
-					segmentStmt.setInt(1, pageId);
-					segmentStmt.setString(2, word);
-					segmentStmt.setString(3, segmentString);
-					segmentStmt.addBatch();
-				}
-				segmentStmt.executeBatch();
+	@Override
+	public DedupReport getDedupReport() {
+		return DEDUP_STATS.snapshot();
+	}
 
-				analyticsMap = Stemmation.stemWords(page.getPageContent());
-//				stemStmt = conn.prepareStatement(stemQuery);
+	private Map<Integer, Integer> getPageIds(Connection conn, int fileId, int fromPage, int toPage)
+			throws SQLException {
+		Map<Integer, Integer> pageIds = new HashMap<>();
+		try (PreparedStatement stmt = conn.prepareStatement(
+				"SELECT pageId, pageNumber FROM pages WHERE fileId = ? AND pageNumber BETWEEN ? AND ?")) {
+			stmt.setInt(1, fileId);
+			stmt.setInt(2, fromPage);
+			stmt.setInt(3, toPage);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					pageIds.put(rs.getInt("pageNumber"), rs.getInt("pageId"));
+				}
+			}
+		}
+		return pageIds;
+	}
 
-				for (Map.Entry<String, String> entry : analyticsMap.entrySet()) {
-					String word = entry.getKey();
-					String stem = entry.getValue();
-					String stemString = String.join("|", stem);
+	/**
+	 * Saves without a known version overwrite whatever is stored, as before.
+	 */
+	@Override
+	public boolean updateFileInDB(int fileId, String fileName, int pageNumber, String content) {
+		try {
+			return updateFileInDB(fileId, fileName, pageNumber, content, ANY_VERSION) >= 0;
+		} catch (UpdateConflictException e) {
+			LOGGER.error(e.getMessage());
+			return false;
+		}
+	}
 
-					stemStmt.setInt(1, pageId);
-					stemStmt.setString(2, word);
-					stemStmt.setString(3, stemString);
-					stemStmt.addBatch();
+	/**
+	 * Saves of the same file are serialized here, before they take a connection;
+	 * saves of other files are not blocked. Across clients, the page is written
+	 * with a compare-and-set on its version instead of a row lock held while the
+	 * analytics are rebuilt.
+	 */
+	@Override
+	public int updateFileInDB(int fileId, String fileName, int pageNumber, String content, int expectedVersion)
+			throws UpdateConflictException {
+		Lock lock = FILE_LOCKS.get(fileId);
+		lock.lock();
+		try {
+			for (int attempt = 1;; attempt++) {
+				try {
+					return updateFile(fileId, fileName, pageNumber, content, expectedVersion);
+				} catch (UpdateConflictException e) {
+					// A blind save only loses a race with another writer; read again and retry
+					if (expectedVersion != ANY_VERSION || attempt >= MAX_BLIND_ATTEMPTS) {
+						throw e;
+					}
 				}
-				stemStmt.executeBatch();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
 
-				scoreMap = performPKL(page.getPageContent());
-//				pklStmt = conn.prepareStatement(pklQuery);
+	private int updateFile(int fileId, String fileName, int pageNumber, String content, int expectedVersion)
+			throws UpdateConflictException {
+		String fileQuery = "UPDATE files SET fileName = ?, lastModified = CURRENT_TIMESTAMP() WHERE fileId = ?";
+		String pageQuery = "UPDATE pages SET pageContent = ?, pageContentZ = ?, version = version + 1 "
+				+ "WHERE pageId = ? AND version = ?";
+		String jobQuery = "UPDATE analysis_jobs SET status = 'PENDING', attempts = 0, lastError = NULL WHERE pageId = ?";
+		String requeueQuery = "INSERT INTO analysis_jobs (pageId, fileId) VALUES (?, ?)";
+		String tfidfQuery = "UPDATE tfidf SET tfidfScore = ?, scoredAt = ?, stale = 0 WHERE fileId = ?";
+		int batchSize = DatabaseConnection.getInstance().getIntProperty("db.batchSize", 1000);
+		PageCodec codec = PageCodec.getInstance();
+
+		Connection conn = null;
+		boolean writer = false;
+		try {
+			StoredPage current = readStoredPage(fileId, pageNumber);
+			if (current == null) {
+				throw new SQLException("Page not found for the given fileId and pageNumber");
+			}
+			boolean nameChanged = !current.fileName.equals(fileName);
+			boolean contentChanged = !current.page.getPageContent().equals(content);
 
-				for (Map.Entry<String, Double> entry : scoreMap.entrySet()) {
-					String word = entry.getKey();
-					Double pkl = entry.getValue();
+			// Saving the text that is already stored is never a conflict
+			if (contentChanged && expectedVersion != ANY_VERSION && current.page.getVersion() != expectedVersion) {
+				throw new UpdateConflictException(current.page);
+			}
+			// Autosave calls this on a timer, so an unchanged page costs one read
+			if (!nameChanged && !contentChanged) {
+				return current.page.getVersion();
+			}
 
-					pklStmt.setInt(1, pageId);
-					pklStmt.setString(2, word);
-					pklStmt.setDouble(3, pkl);
-					pklStmt.addBatch();
-				}
-				pklStmt.executeBatch();
+			DocumentFrequencyStore frequencies = DocumentFrequencyStore.getInstance();
+			frequencies.ensureBuilt();
+			int pageId = current.page.getPageId();
+			boolean queued = current.queued;
 
-				scoreMap = performPMI(page.getPageContent());
-//				pmiStmt = conn.prepareStatement(pmiQuery);
+			if (contentChanged && !queued) {
+				// The analytics update looks up new words on connections of its own; a
+				// queued page is left to the worker and needs no writer slot
+				AnalysisPipeline.acquireWriter();
+				writer = true;
+			}
+			conn = DatabaseConnection.getInstance().getConnection();
+			conn.setAutoCommit(false);
 
-				for (Map.Entry<String, Double> entry : scoreMap.entrySet()) {
-					String word = entry.getKey();
-					Double pmi = entry.getValue();
+			if (contentChanged) {
+				// The page is locked before its job: the worker holds the pages it writes
+				// analytics for (through their foreign keys) when it takes their jobs, so
+				// taking the two in the same order cannot deadlock with it
+				try (PreparedStatement pageStmt = conn.prepareStatement(pageQuery)) {
+					pageStmt.setString(1, codec.text(content));
+					pageStmt.setBytes(2, codec.blob(content));
+					pageStmt.setInt(3, pageId);
+					pageStmt.setInt(4, current.page.getVersion());
+					if (pageStmt.executeUpdate() == 0) {
+						rollback(conn);
+						StoredPage latest = readStoredPage(fileId, pageNumber);
+						throw new UpdateConflictException(latest != null ? latest.page : current.page);
+					}
+				}
 
-					pmiStmt.setInt(1, pageId);
-					pmiStmt.setString(2, word);
-					pmiStmt.setDouble(3, pmi);
-					pmiStmt.addBatch();
+				if (queued) {
+					// Not analysed yet; the worker reads the new content when it gets there
+					try (PreparedStatement jobStmt = conn.prepareStatement(jobQuery)) {
+						jobStmt.setInt(1, pageId);
+						if (jobStmt.executeUpdate() == 0) {
+							// The worker finished the old content meanwhile; queue the page again
+							try (PreparedStatement requeueStmt = conn.prepareStatement(requeueQuery)) {
+								requeueStmt.setInt(1, pageId);
+								requeueStmt.setInt(2, fileId);
+								requeueStmt.executeUpdate();
+							}
+						}
+					}
+				} else {
+					try (PageAnalyticsWriter analyticsWriter = new PageAnalyticsWriter(conn, batchSize)) {
+						analyticsWriter.update(pageId, content);
+					}
 				}
-				pmiStmt.executeBatch();
 
+				// The file is scored as a whole against the other files, and only its
+				// own terms are looked up
+				TFIDFCalculator.DocumentTerms terms = documentTerms(conn, fileId, pageNumber, content);
+				try (PreparedStatement tfidfStmt = conn.prepareStatement(tfidfQuery)) {
+					tfidfStmt.setDouble(1,
+							frequencies.corpusWithout(conn, fileId, terms.getTerms()).calculateDocumentTfIdf(terms));
+					tfidfStmt.setLong(2, frequencies.getChangeCount(conn));
+					tfidfStmt.setInt(3, fileId);
+					tfidfStmt.executeUpdate();
+				}
+				frequencies.replaceDocument(conn, fileId, terms);
 			}
 
-//			tfidfStmt = conn.prepareStatement(tfidfQuery);
-			tfidfStmt.setInt(1, fileID);
-			tfidfStmt.setDouble(2, tfidf);
-			tfidfStmt.executeUpdate();
+			try (PreparedStatement fileStmt = conn.prepareStatement(fileQuery)) {
+				fileStmt.setString(1, fileName);
+				fileStmt.setInt(2, fileId);
+				fileStmt.executeUpdate();
+			}
 
 			conn.commit();
-			return true;
-
-		} catch (Exception e) {
-			try {
-				conn.rollback();
-			} catch (SQLException e1) {
-				e1.printStackTrace();
-				LOGGER.error(e1.getMessage());
+			DatabaseConnection.getInstance().markWrite();
+			if (contentChanged && queued) {
+				AnalyticsWorker.getInstance().wakeUp();
 			}
+			return contentChanged ? current.page.getVersion() + 1 : current.page.getVersion();
+		} catch (UpdateConflictException e) {
+			throw e;
+		} catch (Exception e) {
+			rollback(conn);
 			e.printStackTrace();
 			LOGGER.error(e.getMessage());
+			return -1;
+		} finally {
+			closeQuietly(conn);
+			if (writer) {
+				AnalysisPipeline.releaseWriter();
+			}
 		}
-
-		return false;
 	}
 
-	@Override
-	public boolean updateFileInDB(int fileId, String fileName, int pageNumber, String content) {
+	/**
+	 * Terms of a file with {@code pageNumber} replaced by {@code content}, read a
+	 * page at a time.
+	 */
+	private TFIDFCalculator.DocumentTerms documentTerms(Connection conn, int fileId, int pageNumber, String content)
+			throws SQLException {
+		String query = "SELECT pageNumber, pageContent, pageContentZ FROM pages WHERE fileId = ? ORDER BY pageNumber";
+		TFIDFCalculator.DocumentTerms terms = new TFIDFCalculator.DocumentTerms();
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			stmt.setInt(1, fileId);
+			stmt.setFetchSize(DatabaseConnection.getInstance().getIntProperty("db.stream.fetchSize", 100));
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					terms.add(rs.getInt("pageNumber") == pageNumber ? content
+							: PageCodec.getInstance().read(rs, "pageContent", "pageContentZ"));
+				}
+			}
+		}
+		return terms;
+	}
 
-		PreparedStatement fileStmt = null;
-		PreparedStatement pageStmt = null;
-		// PreparedStatement transliterateStmt = null;
-		PreparedStatement posStmt = null;
-		PreparedStatement lemmaStmt = null;
-		PreparedStatement rootStmt = null;
-		PreparedStatement segmentStmt = null;
-		PreparedStatement stemStmt = null;
-		PreparedStatement pklStmt = null;
-		PreparedStatement pmiStmt = null;
-		PreparedStatement tfidfStmt = null;
+	/**
+	 * Reads a page as stored on the primary, with its file name and whether its
+	 * analytics are still queued. Returns {@code null} if there is no such page.
+	 */
+	private StoredPage readStoredPage(int fileId, int pageNumber) throws SQLException {
+		String query = "SELECT f.fileName, p.pageId, p.pageContent, p.pageContentZ, p.version, "
+				+ "j.pageId IS NOT NULL AS queued FROM files f "
+				+ "JOIN pages p ON p.fileId = f.fileId LEFT JOIN analysis_jobs j ON j.pageId = p.pageId "
+				+ "WHERE f.fileId = ? AND p.pageNumber = ?";
+		try (Connection conn = DatabaseConnection.getInstance().getConnection();
+				PreparedStatement stmt = conn.prepareStatement(query)) {
+			stmt.setInt(1, fileId);
+			stmt.setInt(2, pageNumber);
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (!rs.next()) {
+					return null;
+				}
+				Pages page = new Pages(rs.getInt("pageId"), fileId, pageNumber,
+						PageCodec.getInstance().read(rs, "pageContent", "pageContentZ"), rs.getInt("version"));
+				return new StoredPage(rs.getString("fileName"), page, rs.getBoolean("queued"));
+			}
+		}
+	}
 
+	@Override
+	public boolean deleteFileInDB(int id) {
+		String query = "DELETE FROM FILES WHERE fileId = ?";
+		Lock lock = FILE_LOCKS.get(id);
+		lock.lock();
+		Connection conn = null;
 		try {
-
+			DocumentFrequencyStore.getInstance().ensureBuilt();
+			conn = DatabaseConnection.getInstance().getConnection();
 			conn.setAutoCommit(false);
 
-			// Update file information
-			String fileQuery = "UPDATE files SET fileName = ?, lastModified = CURRENT_TIMESTAMP() WHERE fileId = ?";
-			fileStmt = conn.prepareStatement(fileQuery);
-			fileStmt.setString(1, fileName);
-			fileStmt.setInt(2, fileId);
-			fileStmt.executeUpdate();
-
-			// Update page content
-			String pageQuery = "UPDATE pages SET pageContent = ? WHERE fileId = ? AND pageNumber = ?";
-			pageStmt = conn.prepareStatement(pageQuery);
-			pageStmt.setString(1, content);
-			pageStmt.setInt(2, fileId);
-			pageStmt.setInt(3, pageNumber);
-			pageStmt.executeUpdate();
-
-			// Get the pageId of the updated page
-			String pageIdQuery = "SELECT pageId FROM pages WHERE fileId = ? AND pageNumber = ?";
-			PreparedStatement pageIdStmt = conn.prepareStatement(pageIdQuery);
-			pageIdStmt.setInt(1, fileId);
-			pageIdStmt.setInt(2, pageNumber);
-			ResultSet pageIdRS = pageIdStmt.executeQuery();
-			if (!pageIdRS.next()) {
-				throw new SQLException("Page not found for the given fileId and pageNumber");
+			DocumentFrequencyStore.getInstance().removeDocuments(conn, Collections.singletonList(id));
+			int rowsAffected;
+			try (PreparedStatement fileStmt = conn.prepareStatement(query)) {
+				fileStmt.setInt(1, id);
+				rowsAffected = fileStmt.executeUpdate();
 			}
-			int pageId = pageIdRS.getInt("pageId");
-
-//	        // Update transliteration
-//	        String transliteratedText = Transliteration.transliterate(content);
-//	        String transliterateQuery = "UPDATE transliteratedpages SET transliteratedText = ? WHERE pageId = ?";
-//	        transliterateStmt = conn.prepareStatement(transliterateQuery);
-//	        transliterateStmt.setString(1, transliteratedText);
-//	        transliterateStmt.setInt(2, pageId);
-//	        transliterateStmt.executeUpdate();
-
-			// Update POS tagging
-			Map<String, List<String>> posTagsMap = POSTagger.extractPOS(content);
-			String deletePosQuery = "DELETE FROM pos WHERE pageId = ?";
-			posStmt = conn.prepareStatement(deletePosQuery);
-			posStmt.setInt(1, pageId);
-			posStmt.executeUpdate();
-
-			String insertPosQuery = "INSERT INTO pos (pageId, word, pos) VALUES (?, ?, ?)";
-			posStmt = conn.prepareStatement(insertPosQuery);
-			for (Map.Entry<String, List<String>> entry : posTagsMap.entrySet()) {
-				String word = entry.getKey();
-				String posTags = String.join("|", entry.getValue());
-				posStmt.setInt(1, pageId);
-				posStmt.setString(2, word);
-				posStmt.setString(3, posTags);
-				posStmt.addBatch();
-			}
-			posStmt.executeBatch();
-
-			// Update lemmatization
-			Map<String, String> lemmaMap = Lemmatization.lemmatizeWords(content);
-			String deleteLemmaQuery = "DELETE FROM lemmatization WHERE pageId = ?";
-			lemmaStmt = conn.prepareStatement(deleteLemmaQuery);
-			lemmaStmt.setInt(1, pageId);
-			lemmaStmt.executeUpdate();
-
-			String insertLemmaQuery = "INSERT INTO lemmatization (pageId, word, lemma) VALUES (?, ?, ?)";
-			lemmaStmt = conn.prepareStatement(insertLemmaQuery);
-			for (Map.Entry<String, String> entry : lemmaMap.entrySet()) {
-				lemmaStmt.setInt(1, pageId);
-				lemmaStmt.setString(2, entry.getKey());
-				lemmaStmt.setString(3, entry.getValue());
-				lemmaStmt.addBatch();
-			}
-			lemmaStmt.executeBatch();
-
-			// Update root extraction
-			Map<String, String> rootMap = RootExtraction.extractRoots(content);
-			String deleteRootQuery = "DELETE FROM rootextraction WHERE pageId = ?";
-			rootStmt = conn.prepareStatement(deleteRootQuery);
-			rootStmt.setInt(1, pageId);
-			rootStmt.executeUpdate();
-
-			String insertRootQuery = "INSERT INTO rootextraction (pageId, word, root) VALUES (?, ?, ?)";
-			rootStmt = conn.prepareStatement(insertRootQuery);
-			for (Map.Entry<String, String> entry : rootMap.entrySet()) {
-				rootStmt.setInt(1, pageId);
-				rootStmt.setString(2, entry.getKey());
-				rootStmt.setString(3, entry.getValue());
-				rootStmt.addBatch();
-			}
-			rootStmt.executeBatch();
-
-			// Update word segmentation
-			Map<String, String> segmentMap = WordSegmentation.extractSegments(content);
-			String deleteSegmentQuery = "DELETE FROM wordsegementation WHERE pageId = ?";
-			segmentStmt = conn.prepareStatement(deleteSegmentQuery);
-			segmentStmt.setInt(1, pageId);
-			segmentStmt.executeUpdate();
-
-			String insertSegmentQuery = "INSERT INTO wordsegementation (pageId, word, segment) VALUES (?, ?, ?)";
-			segmentStmt = conn.prepareStatement(insertSegmentQuery);
-			for (Map.Entry<String, String> entry : segmentMap.entrySet()) {
-				segmentStmt.setInt(1, pageId);
-				segmentStmt.setString(2, entry.getKey());
-				segmentStmt.setString(3, entry.getValue());
-				segmentStmt.addBatch();
-			}
-			segmentStmt.executeBatch();
-
-			// Update stemming
-			Map<String, String> stemMap = Stemmation.stemWords(content);
-			String deleteStemQuery = "DELETE FROM stemmation WHERE pageId = ?";
-			stemStmt = conn.prepareStatement(deleteStemQuery);
-			stemStmt.setInt(1, pageId);
-			stemStmt.executeUpdate();
-
-			String insertStemQuery = "INSERT INTO stemmation (pageId, word, stem) VALUES (?, ?, ?)";
-			stemStmt = conn.prepareStatement(insertStemQuery);
-			for (Map.Entry<String, String> entry : stemMap.entrySet()) {
-				stemStmt.setInt(1, pageId);
-				stemStmt.setString(2, entry.getKey());
-				stemStmt.setString(3, entry.getValue());
-				stemStmt.addBatch();
-			}
-			stemStmt.executeBatch();
-
-			// Update PKL
-			Map<String, Double> pklMap = performPKL(content);
-			String deletePklQuery = "DELETE FROM pkl WHERE pageId = ?";
-			pklStmt = conn.prepareStatement(deletePklQuery);
-			pklStmt.setInt(1, pageId);
-			pklStmt.executeUpdate();
-
-			String insertPklQuery = "INSERT INTO pkl (pageId, word, pklScore) VALUES (?, ?, ?)";
-			pklStmt = conn.prepareStatement(insertPklQuery);
-			for (Map.Entry<String, Double> entry : pklMap.entrySet()) {
-				pklStmt.setInt(1, pageId);
-				pklStmt.setString(2, entry.getKey());
-				pklStmt.setDouble(3, entry.getValue());
-				pklStmt.addBatch();
-			}
-			pklStmt.executeBatch();
-
-			// Update PMI
-			Map<String, Double> pmiMap = performPMI(content);
-			String deletePmiQuery = "DELETE FROM pmi WHERE pageId = ?";
-			pmiStmt = conn.prepareStatement(deletePmiQuery);
-			pmiStmt.setInt(1, pageId);
-			pmiStmt.executeUpdate();
-
-			String insertPmiQuery = "INSERT INTO pmi (pageId, word, pmiScore) VALUES (?, ?, ?)";
-			pmiStmt = conn.prepareStatement(insertPmiQuery);
-			for (Map.Entry<String, Double> entry : pmiMap.entrySet()) {
-				pmiStmt.setInt(1, pageId);
-				pmiStmt.setString(2, entry.getKey());
-				pmiStmt.setDouble(3, entry.getValue());
-				pmiStmt.addBatch();
-			}
-			pmiStmt.executeBatch();
-
-			// Update TF-IDF
-			double tfidf = performTFIDF(getAllExistingFilesContent(conn), content);
-			String tfidfQuery = "UPDATE tfidf SET tfidfScore = ? WHERE fileId = ?";
-			tfidfStmt = conn.prepareStatement(tfidfQuery);
-			tfidfStmt.setDouble(1, tfidf);
-			tfidfStmt.setInt(2, fileId);
-			tfidfStmt.executeUpdate();
 
 			conn.commit();
-			return true;
-		} catch (Exception e) {
-			try {
-
-				conn.rollback();
+			DatabaseConnection.getInstance().markWrite();
+			return rowsAffected > 0;
 
-			} catch (SQLException rollbackEx) {
-				rollbackEx.printStackTrace();
-				LOGGER.error(rollbackEx.getMessage());
-			}
+		} catch (SQLException e) {
+			rollback(conn);
 			e.printStackTrace();
 			LOGGER.error(e.getMessage());
 			return false;
+		} finally {
+			closeQuietly(conn);
+			lock.unlock();
 		}
 	}
-
+	/**
+	 * Deletes all given files in one transaction, using one {@code IN (...)}
+	 * statement per chunk of {@code db.batchSize} ids. Pages and analytics go
+	 * with them through the cascading foreign keys, and their terms are taken out
+	 * of the TF-IDF counts. Returns false, with nothing deleted, if any chunk
+	 * fails or any of the files does not exist.
+	 */
 	@Override
-	public boolean deleteFileInDB(int id) {
-		String query = "DELETE FROM FILES WHERE fileId = ?";
-		try (PreparedStatement fileStmt = conn.prepareStatement(query)) {
+	public boolean deleteFilesInDB(Collection<Integer> ids) {
+		if (ids.isEmpty()) {
+			return true;
+		}
+		List<Integer> fileIds = new ArrayList<>(new LinkedHashSet<>(ids));
+		int chunkSize = DatabaseConnection.getInstance().getIntProperty("db.batchSize", 1000);
 
-			fileStmt.setInt(1, id);
-			int rowsAffected = fileStmt.executeUpdate();
+		List<Lock> locks = FILE_LOCKS.getAll(fileIds);
+		locks.forEach(Lock::lock);
+		Connection conn = null;
+		try {
+			DocumentFrequencyStore.getInstance().ensureBuilt();
+			conn = DatabaseConnection.getInstance().getConnection();
+			conn.setAutoCommit(false);
 
-			return rowsAffected > 0;
+			int deleted = 0;
+			for (int from = 0; from < fileIds.size(); from += chunkSize) {
+				List<Integer> chunk = fileIds.subList(from, Math.min(from + chunkSize, fileIds.size()));
+				DocumentFrequencyStore.getInstance().removeDocuments(conn, chunk);
+				String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+				try (PreparedStatement stmt = conn
+						.prepareStatement("DELETE FROM files WHERE fileId IN (" + placeholders + ")")) {
+					for (int i = 0; i < chunk.size(); i++) {
+						stmt.setInt(i + 1, chunk.get(i));
+					}
+					deleted += stmt.executeUpdate();
+				}
+			}
 
+			if (deleted < fileIds.size()) {
+				// All or nothing, so a false result always means nothing was deleted
+				rollback(conn);
+				LOGGER.error((fileIds.size() - deleted) + " of " + fileIds.size() + " files were not found for deletion");
+				return false;
+			}
+			conn.commit();
+			DatabaseConnection.getInstance().markWrite();
+			return true;
 		} catch (SQLException e) {
+			rollback(conn);
 			e.printStackTrace();
 			LOGGER.error(e.getMessage());
 			return false;
+		} finally {
+			closeQuietly(conn);
+			locks.forEach(Lock::unlock);
 		}
 	}
+
 //	public boolean deleteFileInDB(int id) {
 //		String query = "DELETE FROM FILES WHERE fileId = ?";
 //
@@ -476,17 +678,11 @@ public class EditorDBDAO implements IEditorDBDAO {
 	@Override
 	public List<Documents> getFilesFromDB() {
 		List<Documents> documents = new ArrayList<>();
+		String query = "SELECT fileId, fileName, fileHash, dateCreated, lastModified FROM files";
 
-		PreparedStatement stmt = null;
-		String query = null;
-		ResultSet rs;
-
-		try {
-
-			conn.setAutoCommit(false);
-			query = "SELECT fileId, fileName, filehash, dateCreated, lastModified FROM files";
-			stmt = conn.prepareStatement(query);
-			rs = stmt.executeQuery();
+		try (Connection conn = DatabaseConnection.getInstance().getReadConnection();
+				PreparedStatement stmt = conn.prepareStatement(query);
+				ResultSet rs = stmt.executeQuery()) {
 
 			while (rs.next()) {
 				int id = rs.getInt("fileId");
@@ -495,41 +691,75 @@ public class EditorDBDAO implements IEditorDBDAO {
 				String lastModified = rs.getString("lastModified");
 				String dateCreated = rs.getString("dateCreated");
 
-				String query1 = "SELECT pageId, fileId, pageNumber, pageContent FROM pages where fileId = ?";
-				PreparedStatement stmt1 = conn.prepareStatement(query1);
-				stmt1.setInt(1, id);
-				ResultSet rs1 = stmt1.executeQuery();
-				List<Pages> pages = new ArrayList<Pages>();
+				documents.add(new Documents(id, name, hash, lastModified, dateCreated, () -> loadPages(id)));
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+		}
+		return documents;
+	}
 
-				while (rs1.next()) {
-					pages.add(new Pages(rs1.getInt("pageId"), rs1.getInt("fileId"), rs1.getInt("pageNumber"),
-							rs1.getString("pageContent")));
+	@Override
+	public Documents getFileFromDB(int id) {
+		String query = "SELECT fileId, fileName, fileHash, dateCreated, lastModified FROM files WHERE fileId = ?";
+
+		try (Connection conn = DatabaseConnection.getInstance().getReadConnection();
+				PreparedStatement stmt = conn.prepareStatement(query)) {
+			stmt.setInt(1, id);
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (rs.next()) {
+					return new Documents(id, rs.getString("fileName"), rs.getString("fileHash"),
+							rs.getString("lastModified"), rs.getString("dateCreated"), () -> loadPages(id));
 				}
-
-				documents.add(new Documents(id, name, hash, lastModified, dateCreated, pages));
 			}
-			conn.commit();
 		} catch (Exception e) {
-			try {
-				conn.rollback();
-			} catch (SQLException e1) {
-				e1.printStackTrace();
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+		}
+		return null;
+	}
+
+	@Override
+	public List<Pages> getPagesFromDB(int fileId, int fromPage, int toPage) {
+		List<Pages> pages = new ArrayList<Pages>();
+		String query = "SELECT pageId, fileId, pageNumber, pageContent, pageContentZ, version FROM pages "
+				+ "WHERE fileId = ? AND pageNumber BETWEEN ? AND ? ORDER BY pageNumber";
+
+		try (Connection conn = DatabaseConnection.getInstance().getReadConnection();
+				PreparedStatement stmt = conn.prepareStatement(query)) {
+			stmt.setInt(1, fileId);
+			stmt.setInt(2, fromPage);
+			stmt.setInt(3, toPage);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					pages.add(new Pages(rs.getInt("pageId"), rs.getInt("fileId"), rs.getInt("pageNumber"),
+							PageCodec.getInstance().read(rs, "pageContent", "pageContentZ"), rs.getInt("version")));
+				}
 			}
+		} catch (Exception e) {
 			e.printStackTrace();
 			LOGGER.error(e.getMessage());
 		}
-		return documents;
+		return pages;
+	}
+
+	private List<Pages> loadPages(int fileId) {
+		return getPagesFromDB(fileId, 1, Integer.MAX_VALUE);
 	}
 
 	@Override
 	public String transliterateInDB(int pageId, String arabicText) {
 		String content;
 		String deleteQuery = "DELETE FROM transliteratedpages WHERE pageId = ?";
-		String insertQuery = "INSERT INTO transliteratedpages (pageId, transliteratedText) VALUES (?, ?)";
+		String insertQuery = "INSERT INTO transliteratedpages (pageId, transliteratedText, transliteratedTextZ) "
+				+ "VALUES (?, ?, ?)";
 
+		Connection conn = null;
 		try {
 			// Ensure the transliteration result is valid
 			content = Transliteration.transliterate(arabicText);
+			conn = DatabaseConnection.getInstance().getConnection();
 
 			// Begin transaction
 			conn.setAutoCommit(false);
@@ -543,62 +773,156 @@ public class EditorDBDAO implements IEditorDBDAO {
 			// Insert new transliterated content
 			try (PreparedStatement insertStmt = conn.prepareStatement(insertQuery)) {
 				insertStmt.setInt(1, pageId);
-				insertStmt.setString(2, content);
+				insertStmt.setString(2, PageCodec.getInstance().text(content));
+				insertStmt.setBytes(3, PageCodec.getInstance().blob(content));
 				insertStmt.executeUpdate();
 			}
 
 			// Commit transaction
 			conn.commit();
+			DatabaseConnection.getInstance().markWrite();
 			return content;
 
 		} catch (Exception e) {
 			e.printStackTrace();
 			LOGGER.error(e.getMessage());
-			try {
+			rollback(conn);
+			return null;
+		} finally {
+			closeQuietly(conn);
+		}
+	}
 
+	private void rollback(Connection conn) {
+		if (conn == null) {
+			return;
+		}
+		try {
+			if (!conn.getAutoCommit()) {
 				conn.rollback();
-
-			} catch (SQLException rollbackEx) {
-				rollbackEx.printStackTrace();
-				LOGGER.error(rollbackEx.getMessage());
 			}
-			return null;
+		} catch (SQLException rollbackEx) {
+			rollbackEx.printStackTrace();
+			LOGGER.error(rollbackEx.getMessage());
 		}
 	}
 
-	private List<String> getAllExistingFilesContent(Connection conn) throws SQLException {
-		List<String> allFilesContent = new ArrayList<>();
-		String query = "SELECT f.fileId, GROUP_CONCAT(p.pageContent ORDER BY p.pageNumber SEPARATOR '') AS fileContent "
-				+ "FROM files f " + "JOIN pages p ON f.fileId = p.fileId " + "GROUP BY f.fileId";
+	private void closeQuietly(Connection conn) {
+		if (conn == null) {
+			return;
+		}
+		try {
+			conn.close();
+		} catch (SQLException e) {
+			LOGGER.error(e.getMessage());
+		}
+	}
 
-		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
-			while (rs.next()) {
-				allFilesContent.add(rs.getString("fileContent"));
+	/**
+	 * Streams every document, with its pages, to {@code consumer} one document at
+	 * a time. Rows are read through a server-side cursor with a bounded fetch
+	 * size, so memory use does not grow with the size of the corpus.
+	 */
+	@Override
+	public void forEachDocument(Consumer<Documents> consumer) {
+		String query = "SELECT f.fileId, f.fileName, f.fileHash, f.dateCreated, f.lastModified, "
+				+ "p.pageId, p.pageNumber, p.pageContent, p.pageContentZ, p.version FROM files f "
+				+ "JOIN pages p ON f.fileId = p.fileId ORDER BY f.fileId, p.pageNumber";
+
+		try (Connection conn = DatabaseConnection.getInstance().getReadConnection();
+				PreparedStatement stmt = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY,
+						ResultSet.CONCUR_READ_ONLY)) {
+			stmt.setFetchSize(DatabaseConnection.getInstance().getIntProperty("db.stream.fetchSize", 100));
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				Documents current = null;
+				List<Pages> pages = null;
+
+				while (rs.next()) {
+					int fileId = rs.getInt("fileId");
+					if (current == null || current.getId() != fileId) {
+						if (current != null) {
+							consumer.accept(current);
+						}
+						pages = new ArrayList<Pages>();
+						current = new Documents(fileId, rs.getString("fileName"), rs.getString("fileHash"),
+								rs.getString("lastModified"), rs.getString("dateCreated"), pages);
+					}
+					pages.add(new Pages(rs.getInt("pageId"), fileId, rs.getInt("pageNumber"),
+							PageCodec.getInstance().read(rs, "pageContent", "pageContentZ"), rs.getInt("version")));
+				}
+				if (current != null) {
+					consumer.accept(current);
+				}
 			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
 		}
-		return allFilesContent;
 	}
 
 	@Override
-	public synchronized Map<String, String> lemmatizeWords(String text) {
+	public Map<Integer, String> getAnalysisStatuses() {
+		try (Connection conn = DatabaseConnection.getInstance().getReadConnection()) {
+			return AnalyticsWorker.getStatuses(conn);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return new HashMap<>();
+		}
+	}
+
+	@Override
+	public Map<String, String> lemmatizeWords(String text) {
 		// TODO Auto-generated method stub
 		return Lemmatization.lemmatizeWords(PreProcessText.preprocessText(text));
 	}
 
 	@Override
-	public synchronized Map<String, List<String>> extractPOS(String text) {
+	public Map<String, List<String>> extractPOS(String text) {
 		// TODO Auto-generated method stub
 		return POSTagger.extractPOS(PreProcessText.preprocessText(text));
 	}
 
 	@Override
-	public synchronized Map<String, String> extractRoots(String text) {
+	public Map<String, String> extractRoots(String text) {
 		// TODO Auto-generated method stub
 		return RootExtraction.extractRoots(PreProcessText.preprocessText(text));
 	}
 
+	/**
+	 * Serves the stored score, scoring the file again first only if the corpus
+	 * has drifted too far since and the refresher has not caught up yet.
+	 */
 	@Override
-	public synchronized double performTFIDF(List<String> unSelectedDocsContent, String selectedDocContent) {
+	public double getTfIdfScore(int fileId) {
+		String query = "SELECT t.tfidfScore, t.scoredAt, t.stale, c.documentCount, c.changeCount FROM tfidf t "
+				+ "LEFT JOIN corpus_stats c ON c.id = 1 WHERE t.fileId = ?";
+		try {
+			try (Connection conn = DatabaseConnection.getInstance().getReadConnection();
+					PreparedStatement stmt = conn.prepareStatement(query)) {
+				stmt.setInt(1, fileId);
+				try (ResultSet rs = stmt.executeQuery()) {
+					if (!rs.next()) {
+						return Double.NaN;
+					}
+					if (!rs.getBoolean("stale") && !TfIdfRefresher.isStale(rs.getLong("scoredAt"),
+							rs.getLong("changeCount"), rs.getInt("documentCount"), TfIdfRefresher.getDrift())) {
+						return rs.getDouble("tfidfScore");
+					}
+				}
+			}
+			Double score = TfIdfRefresher.getInstance().refresh(fileId);
+			return score == null ? Double.NaN : score;
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return Double.NaN;
+		}
+	}
+
+	@Override
+	public double performTFIDF(List<String> unSelectedDocsContent, String selectedDocContent) {
 		TFIDFCalculator tfidf = new TFIDFCalculator();
 		for (String unSelectedDocContent : unSelectedDocsContent) {
 			tfidf.addDocumentToCorpus(unSelectedDocContent);
@@ -607,7 +931,7 @@ public class EditorDBDAO implements IEditorDBDAO {
 	}
 
 	@Override
-	public synchronized Map<String, Double> performPMI(String content) {
+	public Map<String, Double> performPMI(String content) {
 		// TODO Auto-generated method stub
 		PMICalculator pmi = new PMICalculator(content);
 		Map<String, Double> pmiScores = pmi.calculatePMIForAllBigrams();
@@ -616,7 +940,7 @@ public class EditorDBDAO implements IEditorDBDAO {
 	}
 
 	@Override
-	public synchronized Map<String, Double> performPKL(String content) {
+	public Map<String, Double> performPKL(String content) {
 		// TODO Auto-generated method stub
 		PKLCalculator pkl = new PKLCalculator(content);
 		Map<String, Double> pklScores = pkl.calculatePKLForAllWords();
@@ -624,15 +948,90 @@ public class EditorDBDAO implements IEditorDBDAO {
 	}
 
 	@Override
-	public synchronized Map<String, String> stemWords(String text) {
+	public Map<String, String> stemWords(String text) {
 		// TODO Auto-generated method stub
 		return Stemmation.stemWords(PreProcessText.preprocessText(text));
 	}
 
 	@Override
-	public synchronized Map<String, String> segmentWords(String text) {
+	public Map<String, String> segmentWords(String text) {
 		// TODO Auto-generated method stub
 		return WordSegmentation.extractSegments(PreProcessText.preprocessText(text));
 	}
 
-}
\ No newline at end of file
+	private static class StoredPage {
+		final String fileName;
+		final Pages page;
+		final boolean queued;
+
+		StoredPage(String fileName, Pages page, boolean queued) {
+			this.fileName = fileName;
+			this.page = page;
+			this.queued = queued;
+		}
+	}
+
+	// Opens the text being imported again for each pass over it
+	private interface TextSource {
+		Reader open() throws IOException;
+	}
+
+	private enum Match {
+		DIFFERENT, SAME_TEXT, SAME_PAGES
+	}
+
+	private interface PageSource {
+		/** The next page, or {@code null} after the last one. */
+		String next() throws SQLException, IOException;
+	}
+
+	// The characters of a sequence of pages, and the length of each page read so far
+	private static class PageText {
+		private final PageSource pages;
+		final List<Integer> lengths = new ArrayList<>();
+		private String page = "";
+		private int position;
+
+		PageText(PageSource pages) {
+			this.pages = pages;
+		}
+
+		/** The next character, or -1 after the last page. */
+		int next() throws SQLException, IOException {
+			while (position == page.length()) {
+				String nextPage = pages.next();
+				if (nextPage == null) {
+					return -1;
+				}
+				page = nextPage;
+				position = 0;
+				lengths.add(page.length());
+			}
+			return page.charAt(position++);
+		}
+	}
+
+	private static class Scan {
+		final String hash;
+		final int pages;
+		final long characters;
+
+		Scan(String hash, int pages, long characters) {
+			this.hash = hash;
+			this.pages = pages;
+			this.characters = characters;
+		}
+	}
+
+	private static class Duplicate {
+		final int fileId;
+		final boolean sameName;
+		final boolean queued;
+
+		Duplicate(int fileId, boolean sameName, boolean queued) {
+			this.fileId = fileId;
+			this.sameName = sameName;
+			this.queued = queued;
+		}
+	}
+}
@@ -1,9 +1,16 @@
 package dal;
 
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
+import dto.DedupReport;
 import dto.Documents;
+import dto.Pages;
+import dto.UpdateConflictException;
 
 public class FacadeDAO implements IFacadeDAO {
 
@@ -18,21 +25,67 @@ public class FacadeDAO implements IFacadeDAO {
 		return mariaDB.createFileInDB(nameOfFile, content);
 	}
 
+	@Override
+	public boolean createFileInDB(String nameOfFile, Path file) {
+		return mariaDB.createFileInDB(nameOfFile, file);
+	}
+
+	@Override
+	public boolean createFileInDB(String nameOfFile, InputStream input) {
+		return mariaDB.createFileInDB(nameOfFile, input);
+	}
+
 	@Override
 	public boolean updateFileInDB(int id, String fileName, int pageNumber, String content) {
 		return mariaDB.updateFileInDB(id, fileName, pageNumber, content);
 	}
 
+	@Override
+	public int updateFileInDB(int id, String fileName, int pageNumber, String content, int expectedVersion)
+			throws UpdateConflictException {
+		return mariaDB.updateFileInDB(id, fileName, pageNumber, content, expectedVersion);
+	}
+
 	@Override
 	public boolean deleteFileInDB(int id) {
 		return mariaDB.deleteFileInDB(id);
 	}
 
+	@Override
+	public boolean deleteFilesInDB(Collection<Integer> ids) {
+		return mariaDB.deleteFilesInDB(ids);
+	}
+
 	@Override
 	public List<Documents> getFilesFromDB() {
 		return mariaDB.getFilesFromDB();
 	}
 
+	@Override
+	public Documents getFileFromDB(int id) {
+		return mariaDB.getFileFromDB(id);
+	}
+
+	@Override
+	public List<Pages> getPagesFromDB(int fileId, int fromPage, int toPage) {
+		return mariaDB.getPagesFromDB(fileId, fromPage, toPage);
+	}
+
+	@Override
+	public void forEachDocument(Consumer<Documents> consumer) {
+		mariaDB.forEachDocument(consumer);
+	}
+
+	@Override
+	public Map<Integer, String> getAnalysisStatuses() {
+		return mariaDB.getAnalysisStatuses();
+	}
+
+	@Override
+	public DedupReport getDedupReport() {
+		return mariaDB.getDedupReport();
+	}
+
 	@Override
 	public String transliterateInDB(int pageId, String arabicText) {
 		// TODO Auto-generated method stub
@@ -58,6 +111,11 @@ public class FacadeDAO implements IFacadeDAO {
 		return mariaDB.extractRoots(text);
 	}
 
+	@Override
+	public double getTfIdfScore(int fileId) {
+		return mariaDB.getTfIdfScore(fileId);
+	}
+
 	@Override
 	public double performTFIDF(List<String> unSelectedDocsContent, String selectedDocContent) {
 		// TODO Auto-generated method stub
@@ -1,7 +1,12 @@
 package dal;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 public class HashCalculator {
 	  public static String calculateHash(String text) throws Exception {
@@ -12,6 +17,58 @@ public class HashCalculator {
 	        return hexHash;
 	    }
 
+	/**
+	 * Hash of text handed over a piece at a time, equal to
+	 * {@link HashCalculator#calculateHash(String)} of the pieces joined. Pieces may
+	 * split a surrogate pair.
+	 */
+	public static class TextDigest {
+		private final MessageDigest md;
+		private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		private final ByteBuffer bytes = ByteBuffer.allocate(8192);
+		// Holds a high surrogate left over from the previous piece
+		private CharBuffer carry = CharBuffer.allocate(0);
+
+		public TextDigest() throws NoSuchAlgorithmException {
+			md = MessageDigest.getInstance("MD5");
+		}
+
+		public void update(String text) {
+			CharBuffer chars;
+			if (carry.hasRemaining()) {
+				chars = CharBuffer.allocate(carry.remaining() + text.length());
+				chars.put(carry).put(text).flip();
+			} else {
+				chars = CharBuffer.wrap(text);
+			}
+			encode(chars, false);
+			carry = chars;
+		}
+
+		public String finish() {
+			encode(carry, true);
+			while (encoder.flush(bytes).isOverflow()) {
+				drain();
+			}
+			drain();
+			return bytesToHex(md.digest());
+		}
+
+		private void encode(CharBuffer chars, boolean endOfInput) {
+			while (encoder.encode(chars, bytes, endOfInput).isOverflow()) {
+				drain();
+			}
+			drain();
+		}
+
+		private void drain() {
+			bytes.flip();
+			md.update(bytes);
+			bytes.clear();
+		}
+	}
+
 	    private static String bytesToHex(byte[] bytes) {
 	        StringBuilder hexString = new StringBuilder();
 	        for (byte b : bytes) {
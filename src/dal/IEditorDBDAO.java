@@ -1,19 +1,76 @@
 package dal;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
+import dto.DedupReport;
 import dto.Documents;
+import dto.Pages;
+import dto.UpdateConflictException;
 
 public interface IEditorDBDAO {
+	/** Expected version that makes a save overwrite whatever is stored. */
+	int ANY_VERSION = -1;
+
 	boolean createFileInDB(String nameOfFile, String content);
 
+	/**
+	 * Imports a UTF-8 text file. Backends that can store a file a few pages at a
+	 * time override this; by default the whole file is read first.
+	 */
+	default boolean createFileInDB(String nameOfFile, Path file) {
+		try {
+			return createFileInDB(nameOfFile, MappedTextReader.readAll(file));
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Imports UTF-8 text read from a stream, such as an archive entry; the stream
+	 * is not closed. Backends that store a file a few pages at a time override
+	 * this; by default the whole stream is read into memory first.
+	 */
+	default boolean createFileInDB(String nameOfFile, InputStream input) {
+		try {
+			return createFileInDB(nameOfFile, MappedTextReader.readAll(input));
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
 	boolean updateFileInDB(int id, String fileName, int pageNumber, String content);
 
+	/**
+	 * Saves the page only if it is still at {@code expectedVersion}. Returns the
+	 * version of the page after the save, or -1 if the save failed.
+	 */
+	int updateFileInDB(int id, String fileName, int pageNumber, String content, int expectedVersion)
+			throws UpdateConflictException;
+
 	boolean deleteFileInDB(int id);
 
+	boolean deleteFilesInDB(Collection<Integer> ids);
+
 	List<Documents> getFilesFromDB();
 
+	Documents getFileFromDB(int id);
+
+	List<Pages> getPagesFromDB(int fileId, int fromPage, int toPage);
+
+	void forEachDocument(Consumer<Documents> consumer);
+
+	Map<Integer, String> getAnalysisStatuses();
+
+	DedupReport getDedupReport();
+
 	String transliterateInDB(int pageId, String arabicText);
 
 	Map<String, String> lemmatizeWords(String text);
@@ -22,6 +79,12 @@ public interface IEditorDBDAO {
 
 	Map<String, String> extractRoots(String text);
 
+	/**
+	 * Stored TF-IDF score of a file against the rest of the corpus, refreshed
+	 * when the corpus has changed enough. {@code NaN} if the file has no score.
+	 */
+	double getTfIdfScore(int fileId);
+
 	double performTFIDF(List<String> unSelectedDocsContent, String selectedDocContent);
 
 	Map<String, Double> performPMI(String content);
@@ -0,0 +1,17 @@
+package dal;
+
+/**
+ * Factory for the in-memory backend, selected with
+ * {@code db.type = dal.InMemoryDAOFactory}. All DAOs it hands out share one
+ * store, so the business layer sees the same corpus wherever it asks.
+ */
+public class InMemoryDAOFactory extends AbstractDAOEditorFactory {
+
+	private final IEditorDBDAO dao = new InMemoryEditorDBDAO();
+
+	@Override
+	public IEditorDBDAO createEditorDAO() {
+		return dao;
+	}
+
+}
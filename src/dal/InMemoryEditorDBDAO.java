@@ -0,0 +1,596 @@
+package dal;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import dto.DedupReport;
+import dto.Documents;
+import dto.Pages;
+import dto.UpdateConflictException;
+import pl.EditorPO;
+
+/**
+ * {@link IEditorDBDAO} that keeps the whole corpus in concurrent maps. It runs
+ * the same pagination, analytics and TF-IDF pipeline as {@link EditorDBDAO}
+ * without any database I/O, for tests, benchmarks and batch runs.
+ *
+ * Every write builds a new immutable file record and publishes it with a single
+ * map operation, so readers see either the old or the new state of a file, and
+ * writes to the same file are serialized the way row locks serialize them in
+ * the database.
+ */
+public class InMemoryEditorDBDAO implements IEditorDBDAO {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+	private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+
+	private final Map<Integer, FileRecord> files = new ConcurrentHashMap<>();
+	private final Map<Integer, PageAnalytics> pageAnalytics = new ConcurrentHashMap<>();
+	private final Map<String, WordAnalysis> wordAnalysis = new ConcurrentHashMap<>();
+	private final Map<String, Set<Integer>> filesByHash = new ConcurrentHashMap<>();
+	// Document frequencies of every stored file, kept up to date like term_df;
+	// guarded by its own monitor, never taken inside a map operation on files
+	private final TFIDFCalculator corpus = new TFIDFCalculator();
+	// Files added, saved or deleted so far, guarded by corpus like corpus_stats
+	private long corpusChanges;
+	private final DedupStats dedupStats = new DedupStats();
+	private final StripedLocks importLocks = new StripedLocks(64);
+	private volatile Paginator paginator = Paginator.fromConfig();
+	private final double drift = TfIdfRefresher.getDrift();
+	// Held while deleting, so a batch delete checks and removes its files at once
+	private final Object deleteLock = new Object();
+	private final AtomicInteger nextFileId = new AtomicInteger(1);
+	private final AtomicInteger nextPageId = new AtomicInteger(1);
+
+	@Override
+	public boolean createFileInDB(String nameOfFile, String content) {
+		Lock lock = null;
+		try {
+			String hash = HashCalculator.calculateHash(content);
+			// Like the database backend, imports of the same content run one at a time
+			lock = importLocks.get(hash);
+			lock.lock();
+			List<Pages> paginated = paginator.paginate(content);
+			FileRecord duplicate = findDuplicate(nameOfFile, hash, content, paginated);
+			if (duplicate != null && duplicate.name.equals(nameOfFile)) {
+				dedupStats.recordSkipped(paginated.size(), content.length());
+				return true;
+			}
+
+			TFIDFCalculator.DocumentTerms terms = new TFIDFCalculator.DocumentTerms();
+			terms.add(content);
+			int fileId = nextFileId.getAndIncrement();
+
+			List<Pages> pages = new ArrayList<>();
+			Map<Integer, PageAnalytics> analytics = new HashMap<>();
+			for (Pages page : paginated) {
+				Pages stored = new Pages(nextPageId.getAndIncrement(), fileId, page.getPageNumber(),
+						page.getPageContent());
+				// Analytics are immutable, so a file with the same content can share them
+				PageAnalytics existing = duplicate == null ? null
+						: pageAnalytics.get(duplicate.getPage(page.getPageNumber()).getPageId());
+				analytics.put(stored.getPageId(), existing != null ? existing : analyze(stored.getPageContent()));
+				pages.add(stored);
+			}
+
+			// Nothing is stored until every page has been analysed
+			String now = now();
+			double tfidf;
+			long scoredAt;
+			synchronized (corpus) {
+				tfidf = duplicate == null ? corpus.calculateDocumentTfIdf(terms) : duplicate.tfidf;
+				scoredAt = duplicate == null ? corpusChanges : duplicate.scoredAt;
+				corpus.addDocumentTerms(terms.getTerms());
+				corpusChanges++;
+			}
+			pageAnalytics.putAll(analytics);
+			files.put(fileId,
+					new FileRecord(fileId, nameOfFile, hash, now, now, pages, tfidf, scoredAt, terms.getTerms()));
+			filesByHash.computeIfAbsent(hash, key -> ConcurrentHashMap.newKeySet()).add(fileId);
+			if (duplicate != null) {
+				dedupStats.recordLinked(pages.size(), content.length());
+			}
+			dedupStats.recordStored(pages.size(), content.length());
+			return true;
+		} catch (Exception e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return false;
+		} finally {
+			if (lock != null) {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Pages files imported from now on with {@code paginator}, as restarting with
+	 * other page settings would. Stored files keep their pages.
+	 */
+	public void setPaginator(Paginator paginator) {
+		this.paginator = paginator;
+	}
+
+	@Override
+	public boolean updateFileInDB(int id, String fileName, int pageNumber, String content) {
+		try {
+			return updateFileInDB(id, fileName, pageNumber, content, ANY_VERSION) >= 0;
+		} catch (UpdateConflictException e) {
+			LOGGER.error(e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * The new record, with its page analysed, is built outside the map and only
+	 * installed if the file is still the one it was built from; otherwise the
+	 * save starts over from the newer record. So the version check and the write
+	 * cannot be separated by another save of the same file.
+	 */
+	@Override
+	public int updateFileInDB(int id, String fileName, int pageNumber, String content, int expectedVersion)
+			throws UpdateConflictException {
+		try {
+			while (true) {
+				FileRecord current = files.get(id);
+				if (current == null) {
+					return -1;
+				}
+				Pages page = current.getPage(pageNumber);
+				if (page == null) {
+					throw new IllegalArgumentException("Page not found for the given fileId and pageNumber");
+				}
+				boolean contentChanged = !page.getPageContent().equals(content);
+				if (contentChanged && expectedVersion != ANY_VERSION && page.getVersion() != expectedVersion) {
+					throw new UpdateConflictException(current.copyPages(pageNumber, pageNumber).get(0));
+				}
+				if (!contentChanged && current.name.equals(fileName)) {
+					return page.getVersion();
+				}
+
+				List<Pages> pages = current.pages;
+				TFIDFCalculator.DocumentTerms terms = null;
+				PageAnalytics analytics = null;
+				if (contentChanged) {
+					pages = new ArrayList<>();
+					terms = new TFIDFCalculator.DocumentTerms();
+					for (Pages existing : current.pages) {
+						Pages stored = existing.getPageNumber() == pageNumber
+								? new Pages(existing.getPageId(), id, pageNumber, content, existing.getVersion() + 1)
+								: existing;
+						pages.add(stored);
+						terms.add(stored.getPageContent());
+					}
+					analytics = analyze(content);
+				}
+
+				synchronized (corpus) {
+					double tfidf = current.tfidf;
+					long scoredAt = current.scoredAt;
+					if (contentChanged) {
+						// The whole file is scored against the other files
+						corpus.removeDocumentTerms(current.terms);
+						tfidf = corpus.calculateDocumentTfIdf(terms);
+						scoredAt = corpusChanges;
+					}
+					FileRecord updated = new FileRecord(id, fileName, current.hash, current.dateCreated, now(), pages,
+							tfidf, scoredAt, contentChanged ? terms.getTerms() : current.terms);
+					boolean replaced = files.replace(id, current, updated);
+					if (contentChanged) {
+						corpus.addDocumentTerms(replaced ? terms.getTerms() : current.terms);
+						if (replaced) {
+							corpusChanges++;
+							pageAnalytics.put(page.getPageId(), analytics);
+						}
+					}
+					if (replaced) {
+						return updated.getPage(pageNumber).getVersion();
+					}
+				}
+			}
+		} catch (UpdateConflictException e) {
+			throw e;
+		} catch (Exception e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return -1;
+		}
+	}
+
+	@Override
+	public boolean deleteFileInDB(int id) {
+		FileRecord removed;
+		synchronized (deleteLock) {
+			removed = files.remove(id);
+		}
+		if (removed == null) {
+			return false;
+		}
+		filesByHash.computeIfPresent(removed.hash, (hash, ids) -> {
+			ids.remove(id);
+			return ids.isEmpty() ? null : ids;
+		});
+		for (Pages page : removed.pages) {
+			pageAnalytics.remove(page.getPageId());
+		}
+		synchronized (corpus) {
+			corpus.removeDocumentTerms(removed.terms);
+			corpusChanges++;
+		}
+		return true;
+	}
+
+	/**
+	 * Removes all given files at once. As with the database, returns false and
+	 * deletes nothing if any of the files does not exist.
+	 */
+	@Override
+	public boolean deleteFilesInDB(Collection<Integer> ids) {
+		Set<Integer> fileIds = new LinkedHashSet<>(ids);
+		synchronized (deleteLock) {
+			List<Integer> missing = new ArrayList<>();
+			for (Integer id : fileIds) {
+				if (!files.containsKey(id)) {
+					missing.add(id);
+				}
+			}
+			if (!missing.isEmpty()) {
+				LOGGER.error("Files not found for deletion: " + missing);
+				return false;
+			}
+			for (Integer id : fileIds) {
+				deleteFileInDB(id);
+			}
+			return true;
+		}
+	}
+
+	@Override
+	public List<Documents> getFilesFromDB() {
+		List<Documents> documents = new ArrayList<>();
+		for (FileRecord file : sortedFiles()) {
+			documents.add(file.toDocument());
+		}
+		return documents;
+	}
+
+	@Override
+	public Documents getFileFromDB(int id) {
+		FileRecord file = files.get(id);
+		return file == null ? null : file.toDocument();
+	}
+
+	@Override
+	public List<Pages> getPagesFromDB(int fileId, int fromPage, int toPage) {
+		FileRecord file = files.get(fileId);
+		return file == null ? new ArrayList<Pages>() : file.copyPages(fromPage, toPage);
+	}
+
+	@Override
+	public void forEachDocument(Consumer<Documents> consumer) {
+		for (FileRecord file : sortedFiles()) {
+			if (!file.pages.isEmpty()) {
+				consumer.accept(file.toDocument());
+			}
+		}
+	}
+
+	@Override
+	public Map<Integer, String> getAnalysisStatuses() {
+		// Analytics run inside each write, so every file is always complete
+		return new HashMap<>();
+	}
+
+	@Override
+	public String transliterateInDB(int pageId, String arabicText) {
+		String content = Transliteration.transliterate(arabicText);
+		pageAnalytics.computeIfPresent(pageId, (id, current) -> current.withTransliteration(content));
+		return content;
+	}
+
+	@Override
+	public DedupReport getDedupReport() {
+		return dedupStats.snapshot();
+	}
+
+	/**
+	 * Number of distinct words analysed so far, shared across all pages.
+	 */
+	public int getAnalysedWordCount() {
+		return wordAnalysis.size();
+	}
+
+	/**
+	 * Stored transliteration of a page, or {@code null} if the page is unknown.
+	 */
+	public String getTransliteration(int pageId) {
+		PageAnalytics analytics = pageAnalytics.get(pageId);
+		return analytics == null ? null : analytics.transliteration;
+	}
+
+	private PageAnalytics analyze(String pageContent) {
+		String text = PreProcessText.preprocessText(pageContent).trim();
+
+		Map<String, Integer> occurrences = new HashMap<>();
+		for (String word : text.split("\\s+")) {
+			if (!word.isEmpty()) {
+				occurrences.merge(word, 1, Integer::sum);
+			}
+		}
+
+		// Like the database backend, only words never seen before are analysed
+		List<String> unseen = new ArrayList<>();
+		for (String word : occurrences.keySet()) {
+			if (!wordAnalysis.containsKey(word)) {
+				unseen.add(word);
+			}
+		}
+		if (!unseen.isEmpty()) {
+			String words = String.join(" ", unseen);
+			Map<String, List<String>> pos = POSTagger.extractPOS(words);
+			Map<String, String> lemmas = Lemmatization.lemmatizeWords(words);
+			Map<String, String> roots = RootExtraction.extractRoots(words);
+			Map<String, String> stems = Stemmation.stemWords(words);
+			Map<String, String> segments = WordSegmentation.extractSegments(words);
+			for (String word : unseen) {
+				if (pos.containsKey(word) && lemmas.containsKey(word) && roots.containsKey(word)
+						&& stems.containsKey(word) && segments.containsKey(word)) {
+					wordAnalysis.putIfAbsent(word, new WordAnalysis(String.join("|", pos.get(word)),
+							lemmas.get(word), roots.get(word), stems.get(word), segments.get(word)));
+				}
+			}
+		}
+
+		return new PageAnalytics(Transliteration.transliterate(pageContent), occurrences,
+				new PKLCalculator(text).calculatePKLForAllWords(),
+				new PMICalculator(text).calculatePMIForAllBigrams());
+	}
+
+	/**
+	 * Finds a stored file with the same hash and the same text, as
+	 * {@link EditorDBDAO} does. A file with the same name only needs the same
+	 * text for the import to be skipped, even if it was stored with other page
+	 * boundaries; any other file is only linked to, sharing its page analytics,
+	 * if its pages also match.
+	 */
+	private FileRecord findDuplicate(String fileName, String hash, String content, List<Pages> pages) {
+		FileRecord match = null;
+		for (Integer id : filesByHash.getOrDefault(hash, Collections.<Integer>emptySet())) {
+			FileRecord candidate = files.get(id);
+			if (candidate == null) {
+				continue;
+			}
+			Match compared = candidate.compare(content, pages);
+			if (candidate.name.equals(fileName) && compared != Match.DIFFERENT) {
+				return candidate;
+			}
+			if (compared == Match.SAME_PAGES && (match == null || candidate.id < match.id)) {
+				match = candidate;
+			}
+		}
+		return match;
+	}
+
+	private List<FileRecord> sortedFiles() {
+		List<FileRecord> sorted = new ArrayList<>(files.values());
+		sorted.sort(Comparator.comparingInt(file -> file.id));
+		return sorted;
+	}
+
+	private static String now() {
+		return new SimpleDateFormat(DATE_FORMAT).format(new Date());
+	}
+
+	@Override
+	public Map<String, String> lemmatizeWords(String text) {
+		return Lemmatization.lemmatizeWords(PreProcessText.preprocessText(text));
+	}
+
+	@Override
+	public Map<String, List<String>> extractPOS(String text) {
+		return POSTagger.extractPOS(PreProcessText.preprocessText(text));
+	}
+
+	@Override
+	public Map<String, String> extractRoots(String text) {
+		return RootExtraction.extractRoots(PreProcessText.preprocessText(text));
+	}
+
+	/**
+	 * Like the database backend, a score is computed again once the corpus has
+	 * drifted too far; here that happens when it is asked for, as there is no
+	 * background refresher.
+	 */
+	@Override
+	public double getTfIdfScore(int fileId) {
+		FileRecord file = files.get(fileId);
+		if (file == null) {
+			return Double.NaN;
+		}
+		int documents;
+		long changes;
+		synchronized (corpus) {
+			documents = corpus.getCorpusSize();
+			changes = corpusChanges;
+		}
+		if (!TfIdfRefresher.isStale(file.scoredAt, changes, documents, drift)) {
+			return file.tfidf;
+		}
+
+		TFIDFCalculator.DocumentTerms terms = new TFIDFCalculator.DocumentTerms();
+		for (Pages page : file.pages) {
+			terms.add(page.getPageContent());
+		}
+		double score;
+		long scoredAt;
+		synchronized (corpus) {
+			// Against the other files
+			corpus.removeDocumentTerms(file.terms);
+			score = corpus.calculateDocumentTfIdf(terms);
+			corpus.addDocumentTerms(file.terms);
+			scoredAt = corpusChanges;
+		}
+		// Only stored if the file was not saved meanwhile
+		files.replace(fileId, file, file.withScore(score, scoredAt));
+		return score;
+	}
+
+	@Override
+	public double performTFIDF(List<String> unSelectedDocsContent, String selectedDocContent) {
+		TFIDFCalculator tfidf = new TFIDFCalculator();
+		for (String unSelectedDocContent : unSelectedDocsContent) {
+			tfidf.addDocumentToCorpus(unSelectedDocContent);
+		}
+		return tfidf.calculateDocumentTfIdf(selectedDocContent);
+	}
+
+	@Override
+	public Map<String, Double> performPMI(String content) {
+		return new PMICalculator(content).calculatePMIForAllBigrams();
+	}
+
+	@Override
+	public Map<String, Double> performPKL(String content) {
+		return new PKLCalculator(content).calculatePKLForAllWords();
+	}
+
+	@Override
+	public Map<String, String> stemWords(String text) {
+		return Stemmation.stemWords(PreProcessText.preprocessText(text));
+	}
+
+	@Override
+	public Map<String, String> segmentWords(String text) {
+		return WordSegmentation.extractSegments(PreProcessText.preprocessText(text));
+	}
+
+	private enum Match {
+		DIFFERENT, SAME_TEXT, SAME_PAGES
+	}
+
+	private static class FileRecord {
+		final int id;
+		final String name;
+		final String hash;
+		final String dateCreated;
+		final String lastModified;
+		final List<Pages> pages;
+		final double tfidf;
+		// Corpus change count the score was computed at
+		final long scoredAt;
+		final Set<String> terms;
+
+		FileRecord(int id, String name, String hash, String dateCreated, String lastModified, List<Pages> pages,
+				double tfidf, long scoredAt, Set<String> terms) {
+			this.id = id;
+			this.name = name;
+			this.hash = hash;
+			this.dateCreated = dateCreated;
+			this.lastModified = lastModified;
+			this.pages = Collections.unmodifiableList(pages);
+			this.tfidf = tfidf;
+			this.scoredAt = scoredAt;
+			this.terms = Collections.unmodifiableSet(new HashSet<>(terms));
+		}
+
+		FileRecord withScore(double tfidf, long scoredAt) {
+			return new FileRecord(id, name, hash, dateCreated, lastModified, pages, tfidf, scoredAt, terms);
+		}
+
+		// Compares the stored pages with content as one text, then their boundaries
+		// with the new pages
+		Match compare(String content, List<Pages> other) {
+			boolean samePages = pages.size() == other.size();
+			int offset = 0;
+			for (int i = 0; i < pages.size(); i++) {
+				String text = pages.get(i).getPageContent();
+				if (!content.startsWith(text, offset)) {
+					return Match.DIFFERENT;
+				}
+				samePages = samePages && other.get(i).getPageContent().length() == text.length();
+				offset += text.length();
+			}
+			if (offset != content.length()) {
+				return Match.DIFFERENT;
+			}
+			return samePages ? Match.SAME_PAGES : Match.SAME_TEXT;
+		}
+
+		Pages getPage(int pageNumber) {
+			for (Pages page : pages) {
+				if (page.getPageNumber() == pageNumber) {
+					return page;
+				}
+			}
+			return null;
+		}
+
+		// Pages handed out are copies, so callers cannot change the stored state
+		List<Pages> copyPages(int fromPage, int toPage) {
+			List<Pages> copies = new ArrayList<>();
+			for (Pages page : pages) {
+				if (page.getPageNumber() >= fromPage && page.getPageNumber() <= toPage) {
+					copies.add(new Pages(page.getPageId(), id, page.getPageNumber(), page.getPageContent(),
+							page.getVersion()));
+				}
+			}
+			return copies;
+		}
+
+		Documents toDocument() {
+			return new Documents(id, name, hash, lastModified, dateCreated, copyPages(1, Integer.MAX_VALUE));
+		}
+	}
+
+
+	private static class PageAnalytics {
+		final String transliteration;
+		final Map<String, Integer> occurrences;
+		final Map<String, Double> pkl;
+		final Map<String, Double> pmi;
+
+		PageAnalytics(String transliteration, Map<String, Integer> occurrences, Map<String, Double> pkl,
+				Map<String, Double> pmi) {
+			this.transliteration = transliteration;
+			this.occurrences = occurrences;
+			this.pkl = pkl;
+			this.pmi = pmi;
+		}
+
+		PageAnalytics withTransliteration(String transliteration) {
+			return new PageAnalytics(transliteration, occurrences, pkl, pmi);
+		}
+	}
+
+	private static class WordAnalysis {
+		final String pos;
+		final String lemma;
+		final String root;
+		final String stem;
+		final String segment;
+
+		WordAnalysis(String pos, String lemma, String root, String stem, String segment) {
+			this.pos = pos;
+			this.lemma = lemma;
+			this.root = root;
+			this.stem = stem;
+			this.segment = segment;
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package dal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a UTF-8 text file the way the importer stores it, without loading the
+ * whole file: large files are memory-mapped a window at a time and decoded
+ * straight from the mapping. Line endings come out as {@code \n}, and a last
+ * line without one gets it, which is what reading the file line by line used to
+ * produce. Invalid UTF-8 is replaced rather than failing the import.
+ */
+public class MappedTextReader extends Reader {
+	// A mapping holds on to address space until it is garbage collected, so map
+	// in windows instead of the whole file
+	private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+	// Below this, one read into a heap buffer is cheaper than setting up a mapping
+	private static final int MAP_THRESHOLD = 1024 * 1024;
+
+	private final FileChannel channel;
+	private final long size;
+	private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private final CharBuffer chars = CharBuffer.allocate(8192);
+	private ByteBuffer window;
+	private long windowEnd;
+	private boolean decoded;
+	private boolean pendingCarriageReturn;
+	private char lastChar;
+	private boolean empty = true;
+	private boolean finished;
+
+	public MappedTextReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			size = channel.size();
+			map(0);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		chars.flip();
+	}
+
+	/**
+	 * Reads the whole file into one string, for callers that need it in memory.
+	 */
+	public static String readAll(Path file) throws IOException {
+		StringBuilder content = new StringBuilder();
+		try (MappedTextReader reader = new MappedTextReader(file)) {
+			char[] buffer = new char[8192];
+			int read;
+			while ((read = reader.read(buffer, 0, buffer.length)) >= 0) {
+				content.append(buffer, 0, read);
+			}
+		}
+		return content.toString();
+	}
+
+	/**
+	 * Reads a UTF-8 stream to the end into one string, with the same line endings
+	 * and replacement of invalid input as a file. The stream is not closed.
+	 */
+	public static String readAll(InputStream input) throws IOException {
+		CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		Reader reader = new InputStreamReader(input, decoder);
+		StringBuilder content = new StringBuilder();
+		char[] buffer = new char[8192];
+		boolean pendingCarriageReturn = false;
+		int read;
+		while ((read = reader.read(buffer, 0, buffer.length)) >= 0) {
+			for (int i = 0; i < read; i++) {
+				char c = buffer[i];
+				if (pendingCarriageReturn) {
+					pendingCarriageReturn = false;
+					if (c == '\n') {
+						continue;
+					}
+				}
+				if (c == '\r') {
+					pendingCarriageReturn = true;
+					c = '\n';
+				}
+				content.append(c);
+			}
+		}
+		if (content.length() > 0 && content.charAt(content.length() - 1) != '\n') {
+			content.append('\n');
+		}
+		return content.toString();
+	}
+
+	@Override
+	public int read(char[] buffer, int offset, int length) throws IOException {
+		if (finished) {
+			return -1;
+		}
+		int count = 0;
+		while (count < length) {
+			if (!chars.hasRemaining() && !fill()) {
+				if (!empty && lastChar != '\n') {
+					buffer[offset + count++] = '\n';
+					lastChar = '\n';
+				}
+				finished = true;
+				break;
+			}
+			char c = chars.get();
+			if (pendingCarriageReturn) {
+				pendingCarriageReturn = false;
+				if (c == '\n') {
+					// Second half of \r\n, already written as \n
+					continue;
+				}
+			}
+			if (c == '\r') {
+				pendingCarriageReturn = true;
+				c = '\n';
+			}
+			buffer[offset + count++] = c;
+			lastChar = c;
+			empty = false;
+		}
+		return count == 0 && finished ? -1 : count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		window = null;
+		channel.close();
+	}
+
+	private boolean fill() throws IOException {
+		chars.clear();
+		while (!decoded && chars.position() == 0) {
+			boolean lastWindow = windowEnd >= size;
+			if (decoder.decode(window, chars, lastWindow).isUnderflow()) {
+				if (!lastWindow) {
+					// Start the next window at the first byte not decoded yet, which may be
+					// the start of a character cut by the end of this one
+					map(windowEnd - window.remaining());
+				} else {
+					decoder.flush(chars);
+					decoded = true;
+				}
+			}
+		}
+		chars.flip();
+		return chars.hasRemaining();
+	}
+
+	private void map(long offset) throws IOException {
+		int length = (int) Math.min(WINDOW_SIZE, size - offset);
+		if (size < MAP_THRESHOLD) {
+			window = ByteBuffer.allocate(length);
+			while (window.hasRemaining()) {
+				if (channel.read(window, offset + window.position()) < 0) {
+					break;
+				}
+			}
+			window.flip();
+		} else {
+			window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+		}
+		windowEnd = offset + length;
+	}
+}
@@ -0,0 +1,293 @@
+package dal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs transliteration and the word analyses for a page and queues the
+ * resulting rows in batched inserts. Shared by the inline import path and the
+ * background {@link AnalyticsWorker}. Words are analysed in their normalized
+ * form and stored as ids from the {@link WordDictionary}; a page records only
+ * its word occurrences, while the per-word analysis lives in the shared
+ * {@link WordAnalysisStore}.
+ */
+class PageAnalyticsWriter implements AutoCloseable {
+	private static final String[] ANALYTICS_TABLES = { "transliteratedpages", "page_words", "pkl", "pmi" };
+	// Columns of each analytics table besides pageId, in the order of ANALYTICS_TABLES
+	private static final String[] ANALYTICS_COLUMNS = { "transliteratedText, transliteratedTextZ", "wordId, occurrences",
+			"wordId, leftWordId, rightWordId, pklScore", "wordId, nextWordId, pmiScore" };
+	private static final Pattern PKL_KEY = Pattern.compile("(\\S+) \\((\\S+), (\\S+)\\)");
+	private static final Pattern PMI_KEY = Pattern.compile("(\\S+) (\\S+)");
+	private static final int MAX_WORD_LENGTH = 255;
+
+	private final Connection conn;
+	private final int batchSize;
+	private final PageCodec codec = PageCodec.getInstance();
+	private final BatchStatement transliterateStmt;
+	private final BatchStatement pageWordStmt;
+	private final BatchStatement pklStmt;
+	private final BatchStatement pmiStmt;
+
+	PageAnalyticsWriter(Connection conn, int batchSize) throws SQLException {
+		this.conn = conn;
+		this.batchSize = batchSize;
+		transliterateStmt = new BatchStatement(conn,
+				"INSERT INTO transliteratedpages (pageId, transliteratedText, transliteratedTextZ) VALUES (?, ?, ?)",
+				batchSize);
+		pageWordStmt = new BatchStatement(conn,
+				"INSERT INTO page_words (pageId, wordId, occurrences) VALUES (?, ?, ?)", batchSize);
+		pklStmt = new BatchStatement(conn,
+				"INSERT INTO pkl (pageId, wordId, leftWordId, rightWordId, pklScore) VALUES (?, ?, ?, ?, ?)", batchSize);
+		pmiStmt = new BatchStatement(conn, "INSERT INTO pmi (pageId, wordId, nextWordId, pmiScore) VALUES (?, ?, ?, ?)",
+				batchSize);
+	}
+
+	void add(int pageId, String pageContent) throws SQLException {
+		add(analyse(pageId, pageContent));
+	}
+
+	/**
+	 * Runs the analyses of one page without touching this writer's connection, so
+	 * pages can be analysed on other threads; {@link #add(PageAnalysis)} then
+	 * queues the rows. New words are committed to the dictionary and the word
+	 * analysis store on their own connections, as in {@link #add(int, String)}.
+	 */
+	static PageAnalysis analyse(int pageId, String pageContent) throws SQLException {
+		String transliteration = Transliteration.transliterate(pageContent);
+		String text = PreProcessText.preprocessText(pageContent).trim();
+		Map<String, Integer> occurrences = countWords(text);
+		Map<String, Integer> ids = WordDictionary.getInstance().resolve(occurrences.keySet());
+		WordAnalysisStore.getInstance().ensureAnalysed(ids);
+
+		Map<Integer, Integer> words = new LinkedHashMap<>();
+		for (Map.Entry<String, Integer> entry : occurrences.entrySet()) {
+			words.put(ids.get(entry.getKey()), entry.getValue());
+		}
+		return new PageAnalysis(pageId, transliteration, words, pklRows(text, ids), pmiRows(text, ids));
+	}
+
+	void add(PageAnalysis analysis) throws SQLException {
+		int pageId = analysis.pageId;
+		transliterateStmt.add(pageId, codec.text(analysis.transliteration), codec.blob(analysis.transliteration));
+		for (Map.Entry<Integer, Integer> entry : analysis.words.entrySet()) {
+			pageWordStmt.add(pageId, entry.getKey(), entry.getValue());
+		}
+		for (Map.Entry<List<Integer>, Double> row : analysis.pkl.entrySet()) {
+			pklStmt.add(pageId, row.getKey().get(0), row.getKey().get(1), row.getKey().get(2), row.getValue());
+		}
+		for (Map.Entry<List<Integer>, Double> row : analysis.pmi.entrySet()) {
+			pmiStmt.add(pageId, row.getKey().get(0), row.getKey().get(1), row.getValue());
+		}
+	}
+
+	/**
+	 * Brings the analytics of an already analysed page in line with its new
+	 * content. Only rows that differ from the stored ones are deleted, updated or
+	 * inserted, and only words new to the corpus go through the analyzers.
+	 */
+	void update(int pageId, String pageContent) throws SQLException {
+		String transliterateQuery = "INSERT INTO transliteratedpages (pageId, transliteratedText, transliteratedTextZ) "
+				+ "VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE transliteratedText = VALUES(transliteratedText), "
+				+ "transliteratedTextZ = VALUES(transliteratedTextZ)";
+		try (PreparedStatement stmt = conn.prepareStatement(transliterateQuery)) {
+			String transliteration = Transliteration.transliterate(pageContent);
+			stmt.setInt(1, pageId);
+			stmt.setString(2, codec.text(transliteration));
+			stmt.setBytes(3, codec.blob(transliteration));
+			stmt.executeUpdate();
+		}
+
+		String text = PreProcessText.preprocessText(pageContent).trim();
+		Map<String, Integer> occurrences = countWords(text);
+		Map<String, Integer> ids = WordDictionary.getInstance().resolve(occurrences.keySet());
+		WordAnalysisStore.getInstance().ensureAnalysed(ids);
+
+		Map<List<Integer>, Double> words = new HashMap<>();
+		for (Map.Entry<String, Integer> entry : occurrences.entrySet()) {
+			words.put(Collections.singletonList(ids.get(entry.getKey())), entry.getValue().doubleValue());
+		}
+		syncRows(pageId, "page_words", "occurrences", new String[] { "wordId" }, words);
+		syncRows(pageId, "pkl", "pklScore", new String[] { "wordId", "leftWordId", "rightWordId" },
+				pklRows(text, ids));
+		syncRows(pageId, "pmi", "pmiScore", new String[] { "wordId", "nextWordId" }, pmiRows(text, ids));
+	}
+
+	private static Map<String, Integer> countWords(String text) {
+		Map<String, Integer> occurrences = new HashMap<>();
+		for (String word : text.split("\\s+")) {
+			if (!word.isEmpty() && word.length() <= MAX_WORD_LENGTH) {
+				occurrences.merge(word, 1, Integer::sum);
+			}
+		}
+		return occurrences;
+	}
+
+	private static Map<List<Integer>, Double> pklRows(String text, Map<String, Integer> ids) {
+		Map<List<Integer>, Double> rows = new LinkedHashMap<>();
+		for (Map.Entry<String, Double> entry : new PKLCalculator(text).calculatePKLForAllWords().entrySet()) {
+			Matcher key = PKL_KEY.matcher(entry.getKey());
+			if (key.matches() && ids.containsKey(key.group(1)) && ids.containsKey(key.group(2))
+					&& ids.containsKey(key.group(3))) {
+				rows.put(Arrays.asList(ids.get(key.group(1)), ids.get(key.group(2)), ids.get(key.group(3))),
+						entry.getValue());
+			}
+		}
+		return rows;
+	}
+
+	private static Map<List<Integer>, Double> pmiRows(String text, Map<String, Integer> ids) {
+		Map<List<Integer>, Double> rows = new LinkedHashMap<>();
+		for (Map.Entry<String, Double> entry : new PMICalculator(text).calculatePMIForAllBigrams().entrySet()) {
+			Matcher key = PMI_KEY.matcher(entry.getKey());
+			if (key.matches() && ids.containsKey(key.group(1)) && ids.containsKey(key.group(2))) {
+				rows.put(Arrays.asList(ids.get(key.group(1)), ids.get(key.group(2))), entry.getValue());
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Diffs the stored rows of one page against the wanted rows, keyed by the
+	 * word id columns, and writes only the difference.
+	 */
+	private void syncRows(int pageId, String table, String valueColumn, String[] keyColumns,
+			Map<List<Integer>, Double> wanted) throws SQLException {
+		String keys = String.join(", ", keyColumns);
+		String keyMatch = String.join(" = ? AND ", keyColumns) + " = ?";
+		Map<List<Integer>, Double> stored = new HashMap<>();
+
+		try (PreparedStatement stmt = conn
+				.prepareStatement("SELECT " + keys + ", " + valueColumn + " FROM " + table + " WHERE pageId = ?")) {
+			stmt.setInt(1, pageId);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					List<Integer> key = new ArrayList<>(keyColumns.length);
+					for (String column : keyColumns) {
+						key.add(rs.getInt(column));
+					}
+					stored.put(key, rs.getDouble(valueColumn));
+				}
+			}
+		}
+
+		String deleteQuery = "DELETE FROM " + table + " WHERE pageId = ? AND " + keyMatch;
+		String updateQuery = "UPDATE " + table + " SET " + valueColumn + " = ? WHERE pageId = ? AND " + keyMatch;
+		String insertQuery = "INSERT INTO " + table + " (" + valueColumn + ", pageId, " + keys + ") VALUES (?, ?, "
+				+ String.join(", ", Collections.nCopies(keyColumns.length, "?")) + ")";
+
+		try (BatchStatement deleteStmt = new BatchStatement(conn, deleteQuery, batchSize);
+				BatchStatement updateStmt = new BatchStatement(conn, updateQuery, batchSize);
+				BatchStatement insertStmt = new BatchStatement(conn, insertQuery, batchSize)) {
+			for (List<Integer> key : stored.keySet()) {
+				if (!wanted.containsKey(key)) {
+					List<Object> params = new ArrayList<>();
+					params.add(pageId);
+					params.addAll(key);
+					deleteStmt.add(params.toArray());
+				}
+			}
+			for (Map.Entry<List<Integer>, Double> row : wanted.entrySet()) {
+				Double current = stored.get(row.getKey());
+				if (current != null && Double.compare(current, row.getValue()) == 0) {
+					continue;
+				}
+				List<Object> params = new ArrayList<>();
+				params.add(row.getValue());
+				params.add(pageId);
+				params.addAll(row.getKey());
+				(current == null ? insertStmt : updateStmt).add(params.toArray());
+			}
+			deleteStmt.flush();
+			updateStmt.flush();
+			insertStmt.flush();
+		}
+	}
+
+	/**
+	 * Removes any analytics rows already stored for the given pages, so a page can
+	 * be analysed again after a partial or failed run.
+	 */
+	void deleteExisting(Collection<Integer> pageIds) throws SQLException {
+		if (pageIds.isEmpty()) {
+			return;
+		}
+		String placeholders = String.join(", ", Collections.nCopies(pageIds.size(), "?"));
+		for (String table : ANALYTICS_TABLES) {
+			try (PreparedStatement stmt = conn
+					.prepareStatement("DELETE FROM " + table + " WHERE pageId IN (" + placeholders + ")")) {
+				int index = 1;
+				for (Integer pageId : pageIds) {
+					stmt.setInt(index++, pageId);
+				}
+				stmt.executeUpdate();
+			}
+		}
+	}
+
+	/**
+	 * Copies the analytics of every page of {@code sourceFileId} to the page with
+	 * the same number in {@code targetFileId}, for an import whose content is
+	 * identical to a file that has already been analysed.
+	 */
+	void copyFile(int sourceFileId, int targetFileId) throws SQLException {
+		for (int i = 0; i < ANALYTICS_TABLES.length; i++) {
+			String query = "INSERT INTO " + ANALYTICS_TABLES[i] + " (pageId, " + ANALYTICS_COLUMNS[i] + ") "
+					+ "SELECT np.pageId, " + ANALYTICS_COLUMNS[i] + " FROM pages np "
+					+ "JOIN pages op ON op.fileId = ? AND op.pageNumber = np.pageNumber "
+					+ "JOIN " + ANALYTICS_TABLES[i] + " x ON x.pageId = op.pageId WHERE np.fileId = ?";
+			try (PreparedStatement stmt = conn.prepareStatement(query)) {
+				stmt.setInt(1, sourceFileId);
+				stmt.setInt(2, targetFileId);
+				stmt.executeUpdate();
+			}
+		}
+	}
+
+	void flush() throws SQLException {
+		transliterateStmt.flush();
+		pageWordStmt.flush();
+		pklStmt.flush();
+		pmiStmt.flush();
+	}
+
+	@Override
+	public void close() throws SQLException {
+		transliterateStmt.close();
+		pageWordStmt.close();
+		pklStmt.close();
+		pmiStmt.close();
+	}
+
+	/**
+	 * The analytics rows of one page, computed but not written yet.
+	 */
+	static class PageAnalysis {
+		final int pageId;
+		final String transliteration;
+		// Occurrences per word id
+		final Map<Integer, Integer> words;
+		final Map<List<Integer>, Double> pkl;
+		final Map<List<Integer>, Double> pmi;
+
+		PageAnalysis(int pageId, String transliteration, Map<Integer, Integer> words, Map<List<Integer>, Double> pkl,
+				Map<List<Integer>, Double> pmi) {
+			this.pageId = pageId;
+			this.transliteration = transliteration;
+			this.words = words;
+			this.pkl = pkl;
+			this.pmi = pmi;
+		}
+	}
+}
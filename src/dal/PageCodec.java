@@ -0,0 +1,271 @@
+package dal;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Optional compressed storage of page content and transliterations. When
+ * {@code pages.compression} is on, text is deflated into the {@code ...Z} BLOB
+ * column next to the text column, which is left empty. Rows are read through
+ * {@link #read(ResultSet, String, String)}, so compressed and plain rows can be
+ * mixed while a table is being migrated.
+ *
+ * Short pages compress poorly on their own, so deflate is primed with a preset
+ * dictionary of the most frequent words in the corpus, stored in
+ * {@code compression_dictionaries}. Each compressed value starts with the id of
+ * its dictionary and the length of the text in UTF-8 bytes.
+ */
+public class PageCodec {
+	private static PageCodec INSTANCE;
+	/** Deflate can only look back 32 KB, so a longer dictionary is never used. */
+	public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+	public static final int NO_DICTIONARY = 0;
+	private static final int HEADER_SIZE = 8;
+
+	private final boolean enabled;
+	private final int level;
+	private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+	private volatile Integer currentDictionaryId;
+
+	private PageCodec() {
+		DatabaseConnection db = DatabaseConnection.getInstance();
+		enabled = Boolean.parseBoolean(db.getProperty("pages.compression", "false"));
+		level = db.getIntProperty("pages.compressionLevel", Deflater.BEST_SPEED);
+	}
+
+	public static synchronized PageCodec getInstance() {
+		if (INSTANCE == null) {
+			INSTANCE = new PageCodec();
+		}
+		return INSTANCE;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Value for the text column: the text itself, or empty when it is stored
+	 * compressed.
+	 */
+	public String text(String content) {
+		return enabled ? "" : content;
+	}
+
+	/**
+	 * Value for the BLOB column: the compressed text, or {@code null} when
+	 * compression is off.
+	 */
+	public byte[] blob(String content) throws SQLException {
+		return enabled ? compress(content) : null;
+	}
+
+	/**
+	 * Reads a value stored either as text or compressed.
+	 */
+	public String read(ResultSet rs, String textColumn, String blobColumn) throws SQLException {
+		byte[] blob = rs.getBytes(blobColumn);
+		return blob == null ? rs.getString(textColumn) : decompress(blob);
+	}
+
+	/**
+	 * Compresses with the newest dictionary, whatever {@code pages.compression}
+	 * says. Used by the migration tool.
+	 */
+	public byte[] compress(String content) throws SQLException {
+		int dictionaryId = getCurrentDictionaryId();
+		return compress(content, dictionaryId, dictionaryId == NO_DICTIONARY ? null : dictionaries.get(dictionaryId),
+				level);
+	}
+
+	public String decompress(byte[] blob) throws SQLException {
+		try {
+			return decompress(blob, this::getDictionary);
+		} catch (DataFormatException e) {
+			throw new SQLException("Corrupt compressed content: " + e.getMessage(), e);
+		}
+	}
+
+	public int getCurrentDictionaryId() throws SQLException {
+		if (currentDictionaryId == null) {
+			loadDictionaries();
+		}
+		return currentDictionaryId;
+	}
+
+	/**
+	 * Stores {@code dictionary} as the newest dictionary; content compressed from
+	 * now on uses it, older values keep the one they were written with.
+	 */
+	public int addDictionary(Connection conn, byte[] dictionary) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(
+				"INSERT INTO compression_dictionaries (dictionary) VALUES (?)", Statement.RETURN_GENERATED_KEYS)) {
+			stmt.setBytes(1, dictionary);
+			stmt.executeUpdate();
+			try (ResultSet rs = stmt.getGeneratedKeys()) {
+				rs.next();
+				int id = rs.getInt(1);
+				dictionaries.put(id, dictionary);
+				currentDictionaryId = id;
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * Dictionary stored under {@code id}, or {@code null} if there is none.
+	 */
+	public byte[] getDictionary(int id) {
+		if (id == NO_DICTIONARY) {
+			return null;
+		}
+		byte[] dictionary = dictionaries.get(id);
+		if (dictionary == null) {
+			try {
+				loadDictionaries();
+			} catch (SQLException e) {
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+			dictionary = dictionaries.get(id);
+		}
+		return dictionary;
+	}
+
+	private synchronized void loadDictionaries() throws SQLException {
+		int newest = NO_DICTIONARY;
+		try (Connection conn = DatabaseConnection.getInstance().getConnection();
+				PreparedStatement stmt = conn
+						.prepareStatement("SELECT dictId, dictionary FROM compression_dictionaries");
+				ResultSet rs = stmt.executeQuery()) {
+			while (rs.next()) {
+				int id = rs.getInt("dictId");
+				dictionaries.put(id, rs.getBytes("dictionary"));
+				newest = Math.max(newest, id);
+			}
+		}
+		currentDictionaryId = newest;
+	}
+
+	public static byte[] compress(String content, int dictionaryId, byte[] dictionary, int level) {
+		byte[] input = content.getBytes(StandardCharsets.UTF_8);
+		Deflater deflater = new Deflater(level);
+		try {
+			if (dictionary != null) {
+				deflater.setDictionary(dictionary);
+			}
+			deflater.setInput(input);
+			deflater.finish();
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + HEADER_SIZE + 16);
+			out.write(ByteBuffer.allocate(HEADER_SIZE).putInt(dictionaryId).putInt(input.length).array(), 0,
+					HEADER_SIZE);
+			byte[] buffer = new byte[8192];
+			while (!deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * @param dictionaries looks up a dictionary by the id stored in the value
+	 */
+	public static String decompress(byte[] blob, IntFunction<byte[]> dictionaries) throws DataFormatException {
+		if (blob.length < HEADER_SIZE) {
+			throw new DataFormatException("Missing header");
+		}
+		ByteBuffer header = ByteBuffer.wrap(blob, 0, HEADER_SIZE);
+		int dictionaryId = header.getInt();
+		byte[] output = new byte[header.getInt()];
+
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(blob, HEADER_SIZE, blob.length - HEADER_SIZE);
+			int length = 0;
+			while (length < output.length) {
+				int read = inflater.inflate(output, length, output.length - length);
+				if (read == 0) {
+					if (inflater.needsDictionary()) {
+						byte[] dictionary = dictionaries.apply(dictionaryId);
+						if (dictionary == null) {
+							throw new DataFormatException("Unknown dictionary " + dictionaryId);
+						}
+						inflater.setDictionary(dictionary);
+					} else if (inflater.finished() || inflater.needsInput()) {
+						throw new DataFormatException("Content is shorter than its header says");
+					}
+				}
+				length += read;
+			}
+			return new String(output, StandardCharsets.UTF_8);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Id of the dictionary a compressed value was written with.
+	 */
+	public static int dictionaryId(byte[] blob) {
+		return ByteBuffer.wrap(blob, 0, HEADER_SIZE).getInt();
+	}
+
+	/**
+	 * Builds a preset dictionary from sample text: the words that would save the
+	 * most bytes (frequency times length), separated by spaces. Deflate finds
+	 * matches near the end of the dictionary more cheaply, so the most valuable
+	 * words go last.
+	 */
+	public static byte[] trainDictionary(Iterable<String> samples, int maxSize) {
+		Map<String, Integer> counts = new HashMap<>();
+		for (String sample : samples) {
+			for (String word : sample.split("\\s+")) {
+				if (!word.isEmpty()) {
+					counts.merge(word, 1, Integer::sum);
+				}
+			}
+		}
+
+		List<Map.Entry<String, Integer>> words = new ArrayList<>(counts.entrySet());
+		words.removeIf(entry -> entry.getValue() < 2);
+		words.sort((a, b) -> Long.compare(saving(b), saving(a)));
+
+		List<byte[]> chosen = new ArrayList<>();
+		int size = 0;
+		for (Map.Entry<String, Integer> entry : words) {
+			byte[] word = (entry.getKey() + " ").getBytes(StandardCharsets.UTF_8);
+			if (size + word.length > maxSize) {
+				continue;
+			}
+			chosen.add(word);
+			size += word.length;
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+		for (int i = chosen.size() - 1; i >= 0; i--) {
+			out.write(chosen.get(i), 0, chosen.get(i).length);
+		}
+		return out.toByteArray();
+	}
+
+	private static long saving(Map.Entry<String, Integer> entry) {
+		return (long) entry.getValue() * entry.getKey().getBytes(StandardCharsets.UTF_8).length;
+	}
+}
@@ -0,0 +1,199 @@
+package dal;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import pl.EditorPO;
+
+/**
+ * Command line tool for the compressed page storage of {@link PageCodec}.
+ *
+ * <pre>
+ * java dal.PageCompressionTool train       builds a dictionary from the corpus
+ * java dal.PageCompressionTool compress    stores every page compressed
+ * java dal.PageCompressionTool decompress  stores every page as plain text
+ * java dal.PageCompressionTool benchmark   compares size and CPU time on a sample
+ * </pre>
+ *
+ * Rows are rewritten in chunks of {@code db.batchSize}, each in its own
+ * transaction, so a run can be stopped and started again.
+ */
+public class PageCompressionTool {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+	// Tables holding compressible text: table, text column, compressed column
+	private static final String[][] TABLES = { { "pages", "pageContent", "pageContentZ" },
+			{ "transliteratedpages", "transliteratedText", "transliteratedTextZ" } };
+	private static final int SAMPLE_BYTES = 4 * 1024 * 1024;
+
+	public static void main(String[] args) {
+		String command = args.length > 0 ? args[0] : "";
+		try {
+			switch (command) {
+			case "train":
+				System.out.println("Stored dictionary " + train());
+				break;
+			case "compress":
+				migrate(true);
+				break;
+			case "decompress":
+				migrate(false);
+				break;
+			case "benchmark":
+				benchmark();
+				break;
+			default:
+				System.out.println("Usage: PageCompressionTool train|compress|decompress|benchmark");
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+		} finally {
+			DatabaseConnection.getInstance().closeConnection();
+		}
+	}
+
+	/**
+	 * Trains a dictionary on a sample of the corpus and makes it the current one.
+	 */
+	public static int train() throws SQLException {
+		try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+			byte[] dictionary = PageCodec.trainDictionary(sample(conn), PageCodec.MAX_DICTIONARY_SIZE);
+			return PageCodec.getInstance().addDictionary(conn, dictionary);
+		}
+	}
+
+	/**
+	 * Rewrites every row compressed with the current dictionary, or back to
+	 * plain text. Rows already in the wanted form are left alone.
+	 */
+	public static void migrate(boolean compress) throws SQLException {
+		PageCodec codec = PageCodec.getInstance();
+		int chunkSize = DatabaseConnection.getInstance().getIntProperty("db.batchSize", 1000);
+		int dictionaryId = codec.getCurrentDictionaryId();
+
+		for (String[] table : TABLES) {
+			String selectQuery = "SELECT pageId, " + table[1] + ", " + table[2] + " FROM " + table[0]
+					+ " WHERE pageId > ? ORDER BY pageId LIMIT ?";
+			String updateQuery = "UPDATE " + table[0] + " SET " + table[1] + " = ?, " + table[2]
+					+ " = ? WHERE pageId = ?";
+			long rows = 0;
+			long before = 0;
+			long after = 0;
+			int lastPageId = 0;
+
+			try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+				conn.setAutoCommit(false);
+				while (true) {
+					int read = 0;
+					try (PreparedStatement selectStmt = conn.prepareStatement(selectQuery);
+							BatchStatement updateStmt = new BatchStatement(conn, updateQuery, chunkSize)) {
+						selectStmt.setInt(1, lastPageId);
+						selectStmt.setInt(2, chunkSize);
+						try (ResultSet rs = selectStmt.executeQuery()) {
+							while (rs.next()) {
+								read++;
+								lastPageId = rs.getInt("pageId");
+								byte[] blob = rs.getBytes(table[2]);
+								if (compress ? blob != null && PageCodec.dictionaryId(blob) == dictionaryId
+										: blob == null) {
+									continue;
+								}
+								String content = codec.read(rs, table[1], table[2]);
+								byte[] stored = compress ? codec.compress(content) : null;
+								before += blob != null ? blob.length : content.getBytes(StandardCharsets.UTF_8).length;
+								after += stored != null ? stored.length : content.getBytes(StandardCharsets.UTF_8).length;
+								updateStmt.add(compress ? "" : content, stored, lastPageId);
+								rows++;
+							}
+						}
+						updateStmt.flush();
+					}
+					conn.commit();
+					if (read < chunkSize) {
+						break;
+					}
+				}
+			}
+			System.out.println(table[0] + ": " + rows + " row(s) rewritten, " + before + " -> " + after + " bytes");
+		}
+	}
+
+	/**
+	 * Compresses a sample of the corpus with and without the current dictionary
+	 * and reports the bytes saved against the CPU time spent.
+	 */
+	public static void benchmark() throws SQLException, DataFormatException {
+		PageCodec codec = PageCodec.getInstance();
+		List<String> pages;
+		try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+			pages = sample(conn);
+		}
+		byte[] dictionary = codec.getDictionary(codec.getCurrentDictionaryId());
+		if (dictionary == null) {
+			System.out.println("No dictionary stored yet, training one on the sample");
+			dictionary = PageCodec.trainDictionary(pages, PageCodec.MAX_DICTIONARY_SIZE);
+		}
+
+		long raw = 0;
+		for (String page : pages) {
+			raw += page.getBytes(StandardCharsets.UTF_8).length;
+		}
+		System.out.println(pages.size() + " page(s), " + raw + " bytes as UTF-8 text");
+		report("deflate", pages, raw, null);
+		report("deflate + dictionary", pages, raw, dictionary);
+	}
+
+	private static void report(String name, List<String> pages, long raw, byte[] dictionary)
+			throws DataFormatException {
+		int dictionaryId = dictionary == null ? PageCodec.NO_DICTIONARY : 1;
+		long compressed = 0;
+		List<byte[]> blobs = new ArrayList<>(pages.size());
+
+		long start = System.nanoTime();
+		for (String page : pages) {
+			byte[] blob = PageCodec.compress(page, dictionaryId, dictionary, Deflater.BEST_SPEED);
+			compressed += blob.length;
+			blobs.add(blob);
+		}
+		long compressNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (byte[] blob : blobs) {
+			PageCodec.decompress(blob, id -> dictionary);
+		}
+		long decompressNanos = System.nanoTime() - start;
+
+		System.out.printf("%s: %d bytes (%.1f%% of text), compress %.1f ms, decompress %.1f ms, "
+				+ "%.1f KB saved per ms of decompression%n", name, compressed, 100.0 * compressed / Math.max(1, raw),
+				compressNanos / 1e6, decompressNanos / 1e6,
+				(raw - compressed) / 1024.0 / Math.max(0.001, decompressNanos / 1e6));
+	}
+
+	private static List<String> sample(Connection conn) throws SQLException {
+		PageCodec codec = PageCodec.getInstance();
+		List<String> pages = new ArrayList<>();
+		long size = 0;
+		try (PreparedStatement stmt = conn
+				.prepareStatement("SELECT pageContent, pageContentZ FROM pages ORDER BY RAND() LIMIT ?")) {
+			stmt.setInt(1, SAMPLE_BYTES / 256);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next() && size < SAMPLE_BYTES) {
+					String content = codec.read(rs, "pageContent", "pageContentZ");
+					pages.add(content);
+					size += content.length();
+				}
+			}
+		}
+		return pages;
+	}
+}
@@ -1,32 +1,15 @@
 package dal;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import dto.Pages;
 
 public class PaginationDAO {
 
-	
-	public static List<Pages> paginate(String fileContent){
-		int pageSize = 100;
-		int pageNumber = 1;
-		String pageContent = "";
-		List<Pages> pages = new ArrayList<Pages>();
-		if(fileContent==null || fileContent.isEmpty())
-		{
-			pages.add(new Pages(0, 0, pageNumber, pageContent.toString()));
-			return pages;
-		}
-		for(int i = 0; i < fileContent.length(); i++)
-		{
-			pageContent += fileContent.charAt(i);
-			if (pageContent.length() == pageSize || i == fileContent.length() - 1){
-				pages.add(new Pages(0, 0, pageNumber, pageContent));
-				pageNumber++;
-				pageContent = "";
-			}
-		}
-		return pages;
-	} 
+	/**
+	 * Pages of about 100 characters, ending between words; see {@link Paginator}.
+	 */
+	public static List<Pages> paginate(String fileContent) {
+		return Paginator.DEFAULT.paginate(fileContent);
+	}
 }
@@ -0,0 +1,261 @@
+package dal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import dto.Pages;
+import pl.EditorPO;
+
+/**
+ * Splits text into pages of about {@code pageSize} characters or words. Pages
+ * end between words where possible and never inside a character: surrogate
+ * pairs, letters with their diacritics and joined emoji stay on one page. A
+ * word longer than a whole page is the only thing ever cut, at a character
+ * boundary.
+ *
+ * The text is scanned once, and each page is copied out of it once, so the
+ * cost is linear in the length of the text. {@link PageReader} does the same
+ * on text read from a {@link Reader}, holding only about one page of it.
+ */
+public class Paginator {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+
+	/** What the page size is counted in. */
+	public enum Unit {
+		CHARS, WORDS
+	}
+
+	public static final int DEFAULT_PAGE_SIZE = 100;
+	public static final Paginator DEFAULT = new Paginator(DEFAULT_PAGE_SIZE, Unit.CHARS);
+	// Bounds the memory of a page made of one enormous word or grapheme
+	private static final int MAX_PAGE_LENGTH = 1024 * 1024;
+	private static final char ZERO_WIDTH_JOINER = '\u200D';
+
+	private final int pageSize;
+	private final Unit unit;
+
+	public Paginator(int pageSize, Unit unit) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("Page size must be at least 1");
+		}
+		this.pageSize = unit == Unit.CHARS ? Math.min(pageSize, MAX_PAGE_LENGTH) : pageSize;
+		this.unit = unit;
+	}
+
+	/**
+	 * The paginator set up by {@code pages.size} and {@code pages.sizeUnit}
+	 * ({@code chars} or {@code words}).
+	 */
+	public static Paginator fromConfig() {
+		DatabaseConnection db = DatabaseConnection.getInstance();
+		int pageSize = db.getIntProperty("pages.size", DEFAULT_PAGE_SIZE);
+		Unit unit = Unit.CHARS;
+		try {
+			unit = Unit.valueOf(db.getProperty("pages.sizeUnit", "chars").toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			LOGGER.warn("Invalid value for pages.sizeUnit, using chars");
+		}
+		return new Paginator(pageSize, unit);
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	public Unit getUnit() {
+		return unit;
+	}
+
+	/**
+	 * All pages of {@code text}. Empty or missing text still has one empty page.
+	 */
+	public List<Pages> paginate(String text) {
+		List<Pages> pages = new ArrayList<>();
+		if (text == null || text.isEmpty()) {
+			pages.add(new Pages(0, 0, 1, ""));
+			return pages;
+		}
+		char[] chars = text.toCharArray();
+		int start = 0;
+		while (start < chars.length) {
+			int end = pageEnd(chars, start, chars.length, true);
+			pages.add(new Pages(0, 0, pages.size() + 1, new String(chars, start, end - start)));
+			start = end;
+		}
+		return pages;
+	}
+
+	public PageReader pages(Reader reader) {
+		return new PageReader(reader);
+	}
+
+	/**
+	 * End of the page starting at {@code start} in {@code text[start, limit)}, or
+	 * -1 if the text read so far is not enough to tell. Before the end of the
+	 * input, the last character is only looked at as the successor of the one
+	 * before it, so a surrogate pair cut by {@code limit} is decided the same way
+	 * as when the whole text is there.
+	 */
+	int pageEnd(char[] text, int start, int limit, boolean endOfInput) {
+		return unit == Unit.CHARS ? charsPageEnd(text, start, limit, endOfInput)
+				: wordsPageEnd(text, start, limit, endOfInput);
+	}
+
+	private int charsPageEnd(char[] text, int start, int limit, boolean endOfInput) {
+		int max = start + pageSize;
+		if (endOfInput ? max >= limit : max + 1 >= limit) {
+			// The rest fits, or it cannot be told yet
+			return endOfInput ? limit : -1;
+		}
+		int end = breakBefore(text, start, max, limit);
+		if (end > 0) {
+			return end;
+		}
+		// One grapheme longer than the page: end the page after it
+		int cap = Math.min(endOfInput ? limit : limit - 1, start + MAX_PAGE_LENGTH);
+		for (int p = max + 1; p < cap; p++) {
+			if (isGraphemeBoundary(text, p, limit)) {
+				return p;
+			}
+		}
+		return cap == start + MAX_PAGE_LENGTH || endOfInput ? cap : -1;
+	}
+
+	private int wordsPageEnd(char[] text, int start, int limit, boolean endOfInput) {
+		int words = 0;
+		boolean inWord = false;
+		int scanLimit = endOfInput ? limit : limit - 1;
+		for (int p = start; p < scanLimit; p++) {
+			if (p - start >= MAX_PAGE_LENGTH) {
+				int end = breakBefore(text, start, p, limit);
+				return end > 0 ? end : p;
+			}
+			if (Character.isWhitespace(text[p])) {
+				inWord = false;
+			} else if (!inWord && (p == start || isGraphemeBoundary(text, p, limit))) {
+				// Whitespace after a word stays on its page; the next page starts at a word
+				if (words == pageSize) {
+					return p;
+				}
+				words++;
+				inWord = true;
+			}
+		}
+		return endOfInput ? limit : -1;
+	}
+
+	/**
+	 * The latest place in {@code (start, max]} to end a page: between words if
+	 * there is one, else between graphemes, else -1. {@code text[max]} must exist.
+	 */
+	private static int breakBefore(char[] text, int start, int max, int limit) {
+		int graphemeBreak = -1;
+		for (int p = max; p > start; p--) {
+			if (!isGraphemeBoundary(text, p, limit)) {
+				continue;
+			}
+			if (Character.isWhitespace(text[p - 1]) || Character.isWhitespace(text[p])) {
+				return p;
+			}
+			if (graphemeBreak < 0) {
+				graphemeBreak = p;
+			}
+		}
+		return graphemeBreak;
+	}
+
+	/**
+	 * Whether a page may end between {@code text[p - 1]} and {@code text[p]}. Covers
+	 * what matters for stored text: surrogate pairs, combining marks such as the
+	 * Arabic harakat, variation selectors, emoji modifiers and zero width joiners.
+	 */
+	static boolean isGraphemeBoundary(char[] text, int p, int limit) {
+		char before = text[p - 1];
+		char after = text[p];
+		if (Character.isHighSurrogate(before) && Character.isLowSurrogate(after)) {
+			return false;
+		}
+		if (before == ZERO_WIDTH_JOINER || after == ZERO_WIDTH_JOINER) {
+			return false;
+		}
+		int codePoint = Character.codePointAt(text, p, limit);
+		switch (Character.getType(codePoint)) {
+		case Character.NON_SPACING_MARK:
+		case Character.ENCLOSING_MARK:
+		case Character.COMBINING_SPACING_MARK:
+			return false;
+		default:
+			// Emoji skin tone modifiers
+			return codePoint < 0x1F3FB || codePoint > 0x1F3FF;
+		}
+	}
+
+	/**
+	 * Reads pages one at a time from a {@link Reader}, with the same result as
+	 * {@link Paginator#paginate(String)} on the whole text.
+	 */
+	public class PageReader implements Closeable {
+		private final Reader reader;
+		private char[] buffer;
+		private int start;
+		private int limit;
+		private boolean endOfInput;
+		private int pageNumber = 1;
+
+		private PageReader(Reader reader) {
+			this.reader = reader;
+			buffer = new char[Math.max(8192, unit == Unit.CHARS ? 2 * pageSize + 2 : 0)];
+		}
+
+		/**
+		 * The next page, or {@code null} after the last one. Empty text still has
+		 * one empty page.
+		 */
+		public Pages next() throws IOException {
+			while (true) {
+				if (start == limit && endOfInput) {
+					return pageNumber == 1 ? new Pages(0, 0, pageNumber++, "") : null;
+				}
+				int end = start == limit ? -1 : pageEnd(buffer, start, limit, endOfInput);
+				if (end >= 0) {
+					Pages page = new Pages(0, 0, pageNumber++, new String(buffer, start, end - start));
+					start = end;
+					return page;
+				}
+				fill();
+			}
+		}
+
+		private void fill() throws IOException {
+			if (start > 0) {
+				System.arraycopy(buffer, start, buffer, 0, limit - start);
+				limit -= start;
+				start = 0;
+			}
+			if (limit == buffer.length) {
+				// The page does not fit yet; pageEnd bounds how far this can grow
+				char[] larger = new char[buffer.length * 2];
+				System.arraycopy(buffer, 0, larger, 0, limit);
+				buffer = larger;
+			}
+			int read = reader.read(buffer, limit, buffer.length - limit);
+			if (read < 0) {
+				endOfInput = true;
+			} else {
+				limit += read;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package dal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import pl.EditorPO;
+
+/**
+ * The bytes of a stream kept so they can be read more than once, as the
+ * streaming import does. Small streams are kept in memory; a stream larger
+ * than {@link #MEMORY_LIMIT} is written to a temporary file instead, which
+ * {@link #close()} deletes, so memory use does not grow with the stream.
+ */
+public class SpooledText implements Closeable {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+
+	/** Bytes kept in memory before the rest goes to a temporary file. */
+	public static final int MEMORY_LIMIT = 1024 * 1024;
+
+	private final byte[] bytes;
+	private final Path file;
+
+	private SpooledText(byte[] bytes, Path file) {
+		this.bytes = bytes;
+		this.file = file;
+	}
+
+	/**
+	 * Reads {@code input} to the end. The stream is not closed.
+	 */
+	public static SpooledText read(InputStream input) throws IOException {
+		ByteArrayOutputStream head = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = input.read(buffer)) >= 0) {
+			head.write(buffer, 0, read);
+			if (head.size() > MEMORY_LIMIT) {
+				return spool(head, input, buffer);
+			}
+		}
+		return new SpooledText(head.toByteArray(), null);
+	}
+
+	private static SpooledText spool(ByteArrayOutputStream head, InputStream input, byte[] buffer)
+			throws IOException {
+		Path file = Files.createTempFile("import", ".txt");
+		try (OutputStream out = Files.newOutputStream(file)) {
+			head.writeTo(out);
+			int read;
+			while ((read = input.read(buffer)) >= 0) {
+				out.write(buffer, 0, read);
+			}
+		} catch (IOException e) {
+			Files.deleteIfExists(file);
+			throw e;
+		}
+		return new SpooledText(null, file);
+	}
+
+	/**
+	 * Whether the bytes were written to {@link #getFile()} rather than kept in
+	 * memory.
+	 */
+	public boolean isSpooled() {
+		return file != null;
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	public InputStream openStream() throws IOException {
+		return isSpooled() ? Files.newInputStream(file) : new ByteArrayInputStream(bytes);
+	}
+
+	/**
+	 * Deletes the temporary file. This never fails: the file may still be open or
+	 * mapped by whoever read it (Windows refuses to delete it then), and the text
+	 * was already used, so it is left to be deleted when the JVM exits.
+	 */
+	@Override
+	public void close() {
+		if (file == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			LOGGER.warn("Could not delete " + file + " yet, deleting it on exit: " + e.getMessage());
+			file.toFile().deleteOnExit();
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package dal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import pl.EditorPO;
+
+/**
+ * Per physical connection cache of prepared statements, kept by the
+ * {@link ConnectionPool} for the lifetime of the connection. Closing a statement
+ * obtained through a pooled connection hands it back here instead of closing
+ * it, so the DAO methods reuse the same statement (and, with
+ * {@code useServerPrepStmts}, the same server side prepare) across calls. At
+ * most {@code maxSize} idle statements are kept; the least recently used one is
+ * closed when the cache is full.
+ */
+class StatementCache {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+
+	private final Connection physical;
+	private final int maxSize;
+	private final AtomicInteger openStatements;
+	private final Map<String, PreparedStatement> idle = new LinkedHashMap<>(16, 0.75f, true);
+	private final Set<StatementHandler> checkedOut = ConcurrentHashMap.newKeySet();
+	private volatile boolean broken = false;
+
+	StatementCache(Connection physical, int maxSize, AtomicInteger openStatements) {
+		this.physical = physical;
+		this.maxSize = maxSize;
+		this.openStatements = openStatements;
+	}
+
+	Connection getConnection() {
+		return physical;
+	}
+
+	/**
+	 * Returns a cached statement for the query, or prepares a new one. A key of
+	 * {@code null} means the statement must not be cached, e.g. because it was
+	 * prepared with a non default result set type.
+	 */
+	synchronized PreparedStatement prepare(Connection owner, String key, StatementFactory factory)
+			throws SQLException {
+		PreparedStatement statement = key == null ? null : idle.remove(key);
+		if (statement == null) {
+			statement = factory.prepare(physical);
+			openStatements.incrementAndGet();
+		}
+		StatementHandler handler = new StatementHandler(owner, statement, key);
+		checkedOut.add(handler);
+		return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, handler);
+	}
+
+	private synchronized void checkIn(StatementHandler handler) {
+		checkedOut.remove(handler);
+		PreparedStatement statement = handler.statement;
+		if (handler.key == null || maxSize <= 0 || idle.containsKey(handler.key)) {
+			closeStatement(statement);
+			return;
+		}
+		try {
+			statement.clearParameters();
+			statement.clearBatch();
+			statement.clearWarnings();
+		} catch (SQLException e) {
+			closeStatement(statement);
+			return;
+		}
+		idle.put(handler.key, statement);
+		if (idle.size() > maxSize) {
+			Iterator<PreparedStatement> eldest = idle.values().iterator();
+			closeStatement(eldest.next());
+			eldest.remove();
+		}
+	}
+
+	/**
+	 * Called when the connection goes back to the pool. Statements the borrower
+	 * forgot to close are reclaimed here, so they cannot pile up across borrows.
+	 */
+	void reclaim() {
+		List<StatementHandler> leaked = new ArrayList<>(checkedOut);
+		if (!leaked.isEmpty()) {
+			LOGGER.warn(leaked.size() + " statement(s) were not closed before the connection was returned");
+		}
+		for (StatementHandler handler : leaked) {
+			handler.close();
+		}
+	}
+
+	synchronized void closeAll() {
+		for (StatementHandler handler : new ArrayList<>(checkedOut)) {
+			handler.returned = true;
+			closeStatement(handler.statement);
+		}
+		checkedOut.clear();
+		for (PreparedStatement statement : idle.values()) {
+			closeStatement(statement);
+		}
+		idle.clear();
+	}
+
+	/**
+	 * Whether a statement failed with a connection level error, in which case the
+	 * connection should not be reused.
+	 */
+	boolean isBroken() {
+		return broken;
+	}
+
+	synchronized int getIdleCount() {
+		return idle.size();
+	}
+
+	private void closeStatement(PreparedStatement statement) {
+		openStatements.decrementAndGet();
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			LOGGER.warn(e.getMessage());
+		}
+	}
+
+	interface StatementFactory {
+		PreparedStatement prepare(Connection connection) throws SQLException;
+	}
+
+	private class StatementHandler implements InvocationHandler {
+		private final Connection owner;
+		private final PreparedStatement statement;
+		private final String key;
+		private volatile boolean returned = false;
+
+		StatementHandler(Connection owner, PreparedStatement statement, String key) {
+			this.owner = owner;
+			this.statement = statement;
+			this.key = key;
+		}
+
+		synchronized void close() {
+			if (!returned) {
+				returned = true;
+				checkIn(this);
+			}
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("close".equals(name)) {
+				close();
+				return null;
+			}
+			if ("isClosed".equals(name)) {
+				return returned || statement.isClosed();
+			}
+			if ("getConnection".equals(name)) {
+				return owner;
+			}
+			if ("equals".equals(name)) {
+				return proxy == args[0];
+			}
+			if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			}
+			if ("toString".equals(name)) {
+				return "Cached" + statement;
+			}
+			if (returned) {
+				throw new SQLException("Statement is closed");
+			}
+			try {
+				return method.invoke(statement, args);
+			} catch (InvocationTargetException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof SQLException && ConnectionPool.isFatal((SQLException) cause)) {
+					broken = true;
+				}
+				throw cause;
+			}
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package dal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks shared by hashing keys onto them. Writes to the same
+ * key are serialized while writes to different keys usually run in parallel,
+ * without keeping a lock object per key. These locks only cover this process;
+ * other clients are kept apart by the row locks of the database.
+ */
+class StripedLocks {
+	private final ReentrantLock[] locks;
+
+	StripedLocks(int stripes) {
+		locks = new ReentrantLock[Math.max(1, stripes)];
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new ReentrantLock();
+		}
+	}
+
+	Lock get(Object key) {
+		return locks[index(key)];
+	}
+
+	/**
+	 * The locks for all given keys, each once and always in the same order, so
+	 * threads that take several of them cannot deadlock.
+	 */
+	List<Lock> getAll(Collection<?> keys) {
+		TreeSet<Integer> indexes = new TreeSet<>();
+		for (Object key : keys) {
+			indexes.add(index(key));
+		}
+		List<Lock> stripes = new ArrayList<>(indexes.size());
+		for (int index : indexes) {
+			stripes.add(locks[index]);
+		}
+		return stripes;
+	}
+
+	private int index(Object key) {
+		// Spread the hash so keys that differ only in their high bits do not collide
+		int hash = key.hashCode() * 0x9E3779B9;
+		return Math.floorMod(hash ^ (hash >>> 16), locks.length);
+	}
+}
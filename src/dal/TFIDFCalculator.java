@@ -1,71 +1,169 @@
 package dal;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 public class TFIDFCalculator {
 
-	private List<String> corpus = new ArrayList<>();
+	// Only document frequencies are kept, so the corpus can be streamed in one
+	// document at a time without holding its text in memory.
+	private Map<String, Integer> documentFrequency = new HashMap<>();
+	private int corpusSize = 0;
+
+	public TFIDFCalculator() {
+	}
+
+	/**
+	 * A corpus given by its statistics instead of its documents. Only the
+	 * frequencies of the terms that will be scored are needed; terms missing
+	 * from {@code documentFrequency} count as in no document.
+	 */
+	public TFIDFCalculator(Map<String, Integer> documentFrequency, int corpusSize) {
+		this.documentFrequency.putAll(documentFrequency);
+		this.corpusSize = corpusSize;
+	}
 
 	public void addDocumentToCorpus(String document) {
-		corpus.add(PreProcessText.preprocessText(document));
+		String doc = PreProcessText.preprocessText(document);
+		Set<String> uniqueWords = Arrays.stream(doc.split("\\s+")).collect(Collectors.toSet());
+		addDocumentTerms(uniqueWords);
+	}
+
+	/**
+	 * Adds a document by its distinct terms, as returned by
+	 * {@link DocumentTerms#getTerms()}.
+	 */
+	public void addDocumentTerms(Collection<String> terms) {
+		for (String term : terms) {
+			documentFrequency.merge(term, 1, Integer::sum);
+		}
+		corpusSize++;
+	}
+
+	/**
+	 * Takes back a document added with the same terms, for a document that was
+	 * changed or deleted.
+	 */
+	public void removeDocumentTerms(Collection<String> terms) {
+		for (String term : terms) {
+			documentFrequency.computeIfPresent(term, (key, count) -> count > 1 ? count - 1 : null);
+		}
+		corpusSize--;
+	}
+
+	public int getCorpusSize() {
+		return corpusSize;
 	}
 
 	public double calculateDocumentTfIdf(String document) {
-		String preprocessedDoc = PreProcessText.preprocessText(document);
-		String[] words = preprocessedDoc.split("\\s+");
-		List<String> wordList = Arrays.asList(words);
+		DocumentTerms terms = new DocumentTerms();
+		terms.add(document);
+		return calculateDocumentTfIdf(terms);
+	}
+
+	public double calculateDocumentTfIdf(DocumentTerms terms) {
+		return calculateTfIdf(terms.finish());
+	}
 
-		Map<String, Double> tf = calculateTermFrequency(wordList);
-		Map<String, Double> idf = calculateInverseDocumentFrequency();
+	/**
+	 * Score of a document given by the number of times each of its terms
+	 * occurs, as stored for a file instead of its text.
+	 */
+	public double calculateTfIdf(Map<String, Integer> termCounts) {
+		int wordCount = 0;
+		for (int count : termCounts.values()) {
+			wordCount += count;
+		}
 
+		// Only the document's own terms are looked up, so the cost does not depend
+		// on the size of the corpus
 		double totalTfIdf = 0.0;
-		for (String word : tf.keySet()) {
-			double tfValue = tf.get(word);
-			double idfValue = idf.getOrDefault(word, Math.log(corpus.size() + 1));
+		for (Map.Entry<String, Integer> entry : termCounts.entrySet()) {
+			double tfValue = (double) entry.getValue() / wordCount;
+			Integer frequency = documentFrequency.get(entry.getKey());
+			double idfValue = frequency == null ? Math.log(corpusSize + 1)
+					: Math.log((double) corpusSize / (1 + frequency));
 			totalTfIdf += tfValue * idfValue;
 		}
 
-		return totalTfIdf / wordList.size();
+		return totalTfIdf / wordCount;
 	}
 
-	private Map<String, Double> calculateTermFrequency(List<String> wordList) {
-		Map<String, Double> tf = new HashMap<>();
-		double totalWords = wordList.size();
-
-		for (String word : wordList) {
-			tf.put(word, tf.getOrDefault(word, 0.0) + 1);
+	/**
+	 * Word counts of one document, collected from its text a piece at a time, so
+	 * a large file can be scored while it is streamed. Words are split exactly as
+	 * {@code split("\\s+")} splits the whole preprocessed text, also when a piece
+	 * ends in the middle of a word.
+	 */
+	public static class DocumentTerms {
+		private final Map<String, Integer> counts = new HashMap<>();
+		private final StringBuilder word = new StringBuilder();
+		private boolean started;
+		private boolean startsWithSpace;
+		private int wordCount;
+		private boolean finished;
+
+		public void add(String text) {
+			String doc = PreProcessText.preprocessText(text);
+			for (int i = 0; i < doc.length(); i++) {
+				char c = doc.charAt(i);
+				if (!started) {
+					started = true;
+					startsWithSpace = isSpace(c);
+				}
+				if (isSpace(c)) {
+					endWord();
+				} else {
+					word.append(c);
+				}
+			}
 		}
 
-		for (String word : tf.keySet()) {
-			tf.put(word, tf.get(word) / totalWords);
+		/**
+		 * The distinct terms of the document, the ones it counts for in the
+		 * document frequencies of a corpus.
+		 */
+		public Set<String> getTerms() {
+			return getTermCounts().keySet();
 		}
 
-		return tf;
-	}
-
-	private Map<String, Double> calculateInverseDocumentFrequency() {
-		Map<String, Double> idf = new HashMap<>();
-		int totalDocs = corpus.size();
+		/**
+		 * Number of times each distinct term occurs in the document.
+		 */
+		public Map<String, Integer> getTermCounts() {
+			return Collections.unmodifiableMap(finish());
+		}
 
-		for (String doc : corpus) {
-			Set<String> uniqueWords = Arrays.stream(doc.split("\\s+")).collect(Collectors.toSet());
-			for (String word : uniqueWords) {
-				idf.put(word, idf.getOrDefault(word, 0.0) + 1);
+		private Map<String, Integer> finish() {
+			if (!finished) {
+				finished = true;
+				endWord();
+				// split() keeps one empty leading word, or returns it alone for empty text
+				if (!started || (startsWithSpace && wordCount > 0)) {
+					counts.merge("", 1, Integer::sum);
+					wordCount++;
+				}
 			}
+			return counts;
 		}
 
-		for (String word : idf.keySet()) {
-			idf.put(word, Math.log((double) totalDocs / (1 + idf.get(word))));
+		private void endWord() {
+			if (word.length() > 0) {
+				counts.merge(word.toString(), 1, Integer::sum);
+				wordCount++;
+				word.setLength(0);
+			}
 		}
 
-		return idf;
+		// The characters matched by \s in a regular expression
+		private static boolean isSpace(char c) {
+			return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+		}
 	}
 
 //    public static void main(String[] args) {
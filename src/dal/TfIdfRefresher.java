@@ -0,0 +1,213 @@
+package dal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import pl.EditorPO;
+
+/**
+ * Keeps the stored TF-IDF scores close to the current corpus. Each score
+ * records the corpus change count it was computed at; once more files than
+ * {@code tfidf.refresh.drift} of the corpus have been added, saved or deleted
+ * since, the score is marked stale and scored again in the background, several
+ * files at a time. Scores are computed from the stored term counts of
+ * {@link DocumentFrequencyStore}, without reading any page.
+ */
+public class TfIdfRefresher {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+	private static TfIdfRefresher INSTANCE;
+
+	/** Share of the corpus that may change before a score is recomputed. */
+	public static final double DEFAULT_DRIFT = 0.1;
+
+	private final ScheduledExecutorService scheduler;
+	private final ExecutorService workers;
+	private final double drift;
+	private final int chunkSize;
+
+	private TfIdfRefresher() {
+		DatabaseConnection db = DatabaseConnection.getInstance();
+		drift = getDrift();
+		chunkSize = db.getIntProperty("tfidf.refresh.chunkSize", 100);
+		long pollInterval = db.getIntProperty("tfidf.refresh.pollIntervalMs", 60000);
+		int threads = Math.max(1, db.getIntProperty("tfidf.refresh.threads", 2));
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "tfidf-refresher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		AtomicInteger workerNumber = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "tfidf-worker-" + workerNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		// Turned off, scores are still refreshed one at a time when they are asked for
+		if (pollInterval > 0) {
+			scheduler.scheduleWithFixedDelay(this::refreshStale, 0, pollInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public static synchronized TfIdfRefresher getInstance() {
+		if (INSTANCE == null) {
+			INSTANCE = new TfIdfRefresher();
+		}
+		return INSTANCE;
+	}
+
+	public static boolean isEnabled() {
+		return DatabaseConnection.getInstance().getIntProperty("tfidf.refresh.pollIntervalMs", 60000) > 0;
+	}
+
+	public static double getDrift() {
+		try {
+			return Double.parseDouble(DatabaseConnection.getInstance().getProperty("tfidf.refresh.drift",
+					String.valueOf(DEFAULT_DRIFT)));
+		} catch (NumberFormatException e) {
+			LOGGER.warn("Invalid value for tfidf.refresh.drift, using " + DEFAULT_DRIFT);
+			return DEFAULT_DRIFT;
+		}
+	}
+
+	/**
+	 * Whether a score computed at change {@code scoredAt} has drifted too far
+	 * from a corpus of {@code documents} files now at change {@code changeCount}.
+	 * At least one change is always allowed.
+	 */
+	public static boolean isStale(long scoredAt, long changeCount, int documents, double drift) {
+		return changeCount - scoredAt > Math.max(1, (long) (drift * documents));
+	}
+
+	public void shutdown() {
+		scheduler.shutdown();
+		workers.shutdown();
+	}
+
+	/**
+	 * Scores one file again now and stores the score, for a caller that needs
+	 * it fresh. Returns {@code null} if the file has no stored terms.
+	 */
+	public Double refresh(int fileId) throws SQLException {
+		DocumentFrequencyStore.getInstance().ensureBuilt();
+		try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+			conn.setAutoCommit(false);
+			try {
+				DocumentFrequencyStore.Score score = DocumentFrequencyStore.getInstance().score(conn, fileId);
+				if (score == null) {
+					// Nothing to score it from; not stale either, or it would come back
+					try (PreparedStatement stmt = conn
+							.prepareStatement("UPDATE tfidf SET stale = 0 WHERE fileId = ?")) {
+						stmt.setInt(1, fileId);
+						stmt.executeUpdate();
+					}
+					conn.commit();
+					return null;
+				}
+				// A save that stored a newer score meanwhile is left alone
+				try (PreparedStatement stmt = conn.prepareStatement(
+						"UPDATE tfidf SET tfidfScore = ?, scoredAt = ?, stale = 0 WHERE fileId = ? AND scoredAt <= ?")) {
+					stmt.setDouble(1, score.getValue());
+					stmt.setLong(2, score.getChangeCount());
+					stmt.setInt(3, fileId);
+					stmt.setLong(4, score.getChangeCount());
+					stmt.executeUpdate();
+				}
+				conn.commit();
+				DatabaseConnection.getInstance().markWrite();
+				return score.getValue();
+			} catch (SQLException e) {
+				conn.rollback();
+				throw e;
+			}
+		}
+	}
+
+	private void refreshStale() {
+		try {
+			DocumentFrequencyStore.getInstance().ensureBuilt();
+			markStale();
+			while (refreshNextChunk()) {
+				// keep going until no stale scores are left
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			LOGGER.error("TF-IDF refresher: " + e.getMessage());
+		}
+	}
+
+	private void markStale() throws SQLException {
+		String statsQuery = "SELECT documentCount, changeCount FROM corpus_stats WHERE id = 1";
+		String markQuery = "UPDATE tfidf SET stale = 1 WHERE stale = 0 AND scoredAt < ?";
+		try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+			long changeCount;
+			int documents;
+			try (PreparedStatement stmt = conn.prepareStatement(statsQuery); ResultSet rs = stmt.executeQuery()) {
+				if (!rs.next()) {
+					return;
+				}
+				changeCount = rs.getLong("changeCount");
+				documents = rs.getInt("documentCount");
+			}
+			// The same test as isStale, as one range over the tfidf_scored index
+			try (PreparedStatement stmt = conn.prepareStatement(markQuery)) {
+				stmt.setLong(1, changeCount - Math.max(1, (long) (drift * documents)));
+				int marked = stmt.executeUpdate();
+				if (marked > 0) {
+					LOGGER.info("TF-IDF refresher: " + marked + " scores are stale");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Scores the next chunk of stale files in parallel. Returns false when there
+	 * was nothing left to score, or none of the chunk could be scored.
+	 */
+	private boolean refreshNextChunk() throws SQLException, InterruptedException {
+		List<Integer> fileIds = new ArrayList<>();
+		try (Connection conn = DatabaseConnection.getInstance().getConnection();
+				PreparedStatement stmt = conn
+						.prepareStatement("SELECT fileId FROM tfidf WHERE stale = 1 ORDER BY fileId LIMIT ?")) {
+			stmt.setInt(1, chunkSize);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					fileIds.add(rs.getInt("fileId"));
+				}
+			}
+		}
+		if (fileIds.isEmpty()) {
+			return false;
+		}
+
+		List<Future<Double>> results = new ArrayList<>();
+		for (int fileId : fileIds) {
+			results.add(workers.submit(() -> refresh(fileId)));
+		}
+		boolean progress = false;
+		for (int i = 0; i < results.size(); i++) {
+			try {
+				results.get(i).get();
+				progress = true;
+			} catch (ExecutionException e) {
+				// Left stale, to be tried again at the next poll
+				LOGGER.error("TF-IDF refresh failed for file " + fileIds.get(i) + ": " + e.getCause().getMessage());
+			}
+		}
+		return progress;
+	}
+}
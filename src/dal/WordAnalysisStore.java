@@ -0,0 +1,136 @@
+package dal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Corpus wide store of the morphological analysis of each dictionary word.
+ * POS tags, lemma, root, stem and segments depend only on the token, so each
+ * word is analysed once and every page that contains it refers to the same
+ * {@code word_analysis} row.
+ */
+public class WordAnalysisStore {
+	private static WordAnalysisStore INSTANCE;
+	private static final int LOOKUP_CHUNK = 500;
+
+	private final Set<Integer> analysed = ConcurrentHashMap.newKeySet();
+	private final int maxCacheSize;
+
+	private WordAnalysisStore() {
+		maxCacheSize = DatabaseConnection.getInstance().getIntProperty("words.cacheSize", 200000);
+	}
+
+	public static synchronized WordAnalysisStore getInstance() {
+		if (INSTANCE == null) {
+			INSTANCE = new WordAnalysisStore();
+		}
+		return INSTANCE;
+	}
+
+	/**
+	 * Makes sure every given word has a {@code word_analysis} row, running the
+	 * analyzers once over all words the store has never seen. Like the
+	 * {@link WordDictionary}, new rows are committed on their own connection.
+	 *
+	 * @param ids dictionary id per normalized word
+	 */
+	public void ensureAnalysed(Map<String, Integer> ids) throws SQLException {
+		List<String> unknown = new ArrayList<>();
+		for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+			if (!analysed.contains(entry.getValue())) {
+				unknown.add(entry.getKey());
+			}
+		}
+		if (unknown.isEmpty()) {
+			return;
+		}
+
+		try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+			List<String> missing = new ArrayList<>();
+			for (int from = 0; from < unknown.size(); from += LOOKUP_CHUNK) {
+				List<String> chunk = unknown.subList(from, Math.min(from + LOOKUP_CHUNK, unknown.size()));
+				Set<Integer> stored = findStored(conn, chunk, ids);
+				for (String word : chunk) {
+					if (stored.contains(ids.get(word))) {
+						remember(ids.get(word));
+					} else {
+						missing.add(word);
+					}
+				}
+			}
+			if (missing.isEmpty()) {
+				return;
+			}
+			// Pages are analysed in parallel; inserting in id order keeps their
+			// batches from deadlocking on the primary key
+			missing.sort(Comparator.comparing(ids::get));
+
+			// The analyzers work token by token, so all unseen words go through
+			// them in a single call each
+			String text = String.join(" ", missing);
+			Map<String, List<String>> pos = POSTagger.extractPOS(text);
+			Map<String, String> lemmas = Lemmatization.lemmatizeWords(text);
+			Map<String, String> roots = RootExtraction.extractRoots(text);
+			Map<String, String> stems = Stemmation.stemWords(text);
+			Map<String, String> segments = WordSegmentation.extractSegments(text);
+
+			String insertQuery = "INSERT IGNORE INTO word_analysis (wordId, pos, lemma, root, stem, segment) "
+					+ "VALUES (?, ?, ?, ?, ?, ?)";
+			List<Integer> inserted = new ArrayList<>();
+			try (PreparedStatement stmt = conn.prepareStatement(insertQuery)) {
+				for (String word : missing) {
+					// Leave words an analyzer failed on for a later page to retry
+					if (!pos.containsKey(word) || !lemmas.containsKey(word) || !roots.containsKey(word)
+							|| !stems.containsKey(word) || !segments.containsKey(word)) {
+						continue;
+					}
+					stmt.setInt(1, ids.get(word));
+					stmt.setString(2, String.join("|", pos.get(word)));
+					stmt.setString(3, lemmas.get(word));
+					stmt.setString(4, roots.get(word));
+					stmt.setString(5, stems.get(word));
+					stmt.setString(6, segments.get(word));
+					stmt.addBatch();
+					inserted.add(ids.get(word));
+				}
+				stmt.executeBatch();
+			}
+			inserted.forEach(this::remember);
+		}
+	}
+
+	private Set<Integer> findStored(Connection conn, List<String> words, Map<String, Integer> ids)
+			throws SQLException {
+		Set<Integer> stored = new HashSet<>();
+		String placeholders = String.join(", ", Collections.nCopies(words.size(), "?"));
+		try (PreparedStatement stmt = conn
+				.prepareStatement("SELECT wordId FROM word_analysis WHERE wordId IN (" + placeholders + ")")) {
+			for (int i = 0; i < words.size(); i++) {
+				stmt.setInt(i + 1, ids.get(words.get(i)));
+			}
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					stored.add(rs.getInt("wordId"));
+				}
+			}
+		}
+		return stored;
+	}
+
+	private void remember(int wordId) {
+		if (analysed.size() >= maxCacheSize) {
+			analysed.clear();
+		}
+		analysed.add(wordId);
+	}
+}
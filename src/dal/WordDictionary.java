@@ -0,0 +1,101 @@
+package dal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns normalized words into the {@code words} table and caches their ids in
+ * process, so analytics inserts can reference words by INT id without a round
+ * trip per word.
+ */
+public class WordDictionary {
+	private static WordDictionary INSTANCE;
+	private static final int LOOKUP_CHUNK = 500;
+
+	private final Map<String, Integer> cache = new ConcurrentHashMap<>();
+	private final int maxCacheSize;
+
+	private WordDictionary() {
+		maxCacheSize = DatabaseConnection.getInstance().getIntProperty("words.cacheSize", 200000);
+	}
+
+	public static synchronized WordDictionary getInstance() {
+		if (INSTANCE == null) {
+			INSTANCE = new WordDictionary();
+		}
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the id of every given word, adding unseen words to the dictionary.
+	 * New entries are committed on their own connection, so ids handed out here
+	 * stay valid even if the caller's transaction rolls back.
+	 */
+	public Map<String, Integer> resolve(Collection<String> words) throws SQLException {
+		Map<String, Integer> ids = new HashMap<>();
+		List<String> missing = new ArrayList<>();
+
+		for (String word : words) {
+			Integer id = cache.get(word);
+			if (id != null) {
+				ids.put(word, id);
+			} else if (!ids.containsKey(word)) {
+				ids.put(word, null);
+				missing.add(word);
+			}
+		}
+		if (missing.isEmpty()) {
+			return ids;
+		}
+		// Pages are analysed in parallel; inserting in one order keeps their batches
+		// from deadlocking on the unique key
+		Collections.sort(missing);
+
+		try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+			try (PreparedStatement insertStmt = conn.prepareStatement("INSERT IGNORE INTO words (word) VALUES (?)")) {
+				for (String word : missing) {
+					insertStmt.setString(1, word);
+					insertStmt.addBatch();
+				}
+				insertStmt.executeBatch();
+			}
+
+			for (int from = 0; from < missing.size(); from += LOOKUP_CHUNK) {
+				List<String> chunk = missing.subList(from, Math.min(from + LOOKUP_CHUNK, missing.size()));
+				String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+				try (PreparedStatement selectStmt = conn
+						.prepareStatement("SELECT wordId, word FROM words WHERE word IN (" + placeholders + ")")) {
+					for (int i = 0; i < chunk.size(); i++) {
+						selectStmt.setString(i + 1, chunk.get(i));
+					}
+					try (ResultSet rs = selectStmt.executeQuery()) {
+						while (rs.next()) {
+							ids.put(rs.getString("word"), rs.getInt("wordId"));
+						}
+					}
+				}
+			}
+		}
+
+		if (cache.size() + missing.size() > maxCacheSize) {
+			cache.clear();
+		}
+		for (String word : missing) {
+			Integer id = ids.get(word);
+			if (id == null) {
+				throw new SQLException("Could not resolve dictionary id for word: " + word);
+			}
+			cache.put(word, id);
+		}
+		return ids;
+	}
+}
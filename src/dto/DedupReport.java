@@ -0,0 +1,74 @@
+package dto;
+
+/**
+ * Work saved by content-hash deduplication on import: files that were skipped
+ * because the same file was already imported, files that reused the analytics
+ * of an existing file with the same content, and the pages and characters that
+ * did not have to go through the analysis pipeline. For comparison it also
+ * carries the pages and characters that imports stored, with or without reuse.
+ */
+public class DedupReport {
+	private final int skippedFiles;
+	private final int linkedFiles;
+	private final int reusedPages;
+	private final long reusedCharacters;
+	private final int storedPages;
+	private final long storedCharacters;
+
+	public DedupReport(int skippedFiles, int linkedFiles, int reusedPages, long reusedCharacters) {
+		this(skippedFiles, linkedFiles, reusedPages, reusedCharacters, 0, 0);
+	}
+
+	public DedupReport(int skippedFiles, int linkedFiles, int reusedPages, long reusedCharacters, int storedPages,
+			long storedCharacters) {
+		this.skippedFiles = skippedFiles;
+		this.linkedFiles = linkedFiles;
+		this.reusedPages = reusedPages;
+		this.reusedCharacters = reusedCharacters;
+		this.storedPages = storedPages;
+		this.storedCharacters = storedCharacters;
+	}
+
+	public int getSkippedFiles() {
+		return skippedFiles;
+	}
+
+	public int getLinkedFiles() {
+		return linkedFiles;
+	}
+
+	public int getReusedPages() {
+		return reusedPages;
+	}
+
+	public long getReusedCharacters() {
+		return reusedCharacters;
+	}
+
+	public int getStoredPages() {
+		return storedPages;
+	}
+
+	public long getStoredCharacters() {
+		return storedCharacters;
+	}
+
+	public boolean hasSavings() {
+		return skippedFiles > 0 || linkedFiles > 0;
+	}
+
+	/**
+	 * The work saved after {@code earlier} was taken, e.g. during one import.
+	 */
+	public DedupReport since(DedupReport earlier) {
+		return new DedupReport(skippedFiles - earlier.skippedFiles, linkedFiles - earlier.linkedFiles,
+				reusedPages - earlier.reusedPages, reusedCharacters - earlier.reusedCharacters,
+				storedPages - earlier.storedPages, storedCharacters - earlier.storedCharacters);
+	}
+
+	@Override
+	public String toString() {
+		return skippedFiles + " duplicate file(s) skipped, " + linkedFiles + " file(s) reused existing analysis, "
+				+ reusedPages + " page(s) and " + reusedCharacters + " character(s) not analysed again";
+	}
+}
@@ -1,6 +1,7 @@
 package dto;
 
 import java.util.List;
+import java.util.function.Supplier;
 
 public class Documents {
 	private int id;
@@ -9,6 +10,7 @@ public class Documents {
 	private String lastModified;
 	private String dateCreated;
 	private List<Pages> pages;
+	private Supplier<List<Pages>> pageLoader;
 
 	public Documents(int id, String name, String hash, String lastModified, String dateCreated, List<Pages> pages) {
 		this.id = id;
@@ -19,6 +21,20 @@ public class Documents {
 		this.pages = pages;
 	}
 
+	/**
+	 * Creates a document whose pages are fetched by {@code pageLoader} the first
+	 * time {@link #getPages()} is called.
+	 */
+	public Documents(int id, String name, String hash, String lastModified, String dateCreated,
+			Supplier<List<Pages>> pageLoader) {
+		this.id = id;
+		this.name = name;
+		this.hash = hash;
+		this.lastModified = lastModified;
+		this.dateCreated = dateCreated;
+		this.pageLoader = pageLoader;
+	}
+
 	public int getId() {
 		return id;
 	}
@@ -39,7 +55,11 @@ public class Documents {
 		return dateCreated;
 	}
 
-	public List<Pages> getPages() {
+	public synchronized List<Pages> getPages() {
+		if (pages == null && pageLoader != null) {
+			pages = pageLoader.get();
+			pageLoader = null;
+		}
 		return pages;
 	}
 
@@ -63,8 +83,9 @@ public class Documents {
 		this.dateCreated = dateCreated;
 	}
 
-	public void setPages(List<Pages> pages) {
+	public synchronized void setPages(List<Pages> pages) {
 		this.pages = pages;
+		this.pageLoader = null;
 	}
 
 }
@@ -0,0 +1,67 @@
+package dto;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of importing a batch of files: which files were stored, which failed,
+ * how many were not started because the import was cancelled, and the work
+ * saved by deduplication while it ran.
+ */
+public class ImportReport {
+	private final List<String> imported;
+	private final List<String> failed;
+	private final int cancelled;
+	private final DedupReport dedup;
+	private final long elapsedMillis;
+
+	public ImportReport(List<String> imported, List<String> failed, int cancelled, DedupReport dedup,
+			long elapsedMillis) {
+		this.imported = Collections.unmodifiableList(imported);
+		this.failed = Collections.unmodifiableList(failed);
+		this.cancelled = cancelled;
+		this.dedup = dedup;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	public List<String> getImported() {
+		return imported;
+	}
+
+	public List<String> getFailed() {
+		return failed;
+	}
+
+	public int getCancelled() {
+		return cancelled;
+	}
+
+	public DedupReport getDedup() {
+		return dedup;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public int getTotal() {
+		return imported.size() + failed.size() + cancelled;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder summary = new StringBuilder();
+		summary.append(imported.size()).append(" of ").append(getTotal()).append(" file(s) imported in ")
+				.append(String.format("%.1f", elapsedMillis / 1000.0)).append(" s");
+		if (!failed.isEmpty()) {
+			summary.append("\n").append(failed.size()).append(" failed: ").append(String.join(", ", failed));
+		}
+		if (cancelled > 0) {
+			summary.append("\n").append(cancelled).append(" not imported because the import was cancelled");
+		}
+		if (dedup != null && dedup.hasSavings()) {
+			summary.append("\nAlready imported content: ").append(dedup);
+		}
+		return summary.toString();
+	}
+}
@@ -6,6 +6,7 @@ public class Pages {
 	int fileId;
 	int pageNumber;
 	String pageContent;
+	int version;
 
 	public Pages(int pageId, int fileId, int pageNumber, String pageContent) {
 		this.pageId = pageId;
@@ -14,6 +15,11 @@ public class Pages {
 		this.pageContent = pageContent;
 	}
 
+	public Pages(int pageId, int fileId, int pageNumber, String pageContent, int version) {
+		this(pageId, fileId, pageNumber, pageContent);
+		this.version = version;
+	}
+
 	public int getPageId() {
 		return pageId;
 	}
@@ -30,6 +36,13 @@ public class Pages {
 		return pageContent;
 	}
 
+	/**
+	 * Number of saves of this page's content, used to detect concurrent edits.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
 	public void setPageId(int pageId) {
 		this.pageId = pageId;
 	}
@@ -45,4 +58,8 @@ public class Pages {
 	public void setPageContent(String pageContent) {
 		this.pageContent = pageContent;
 	}
+
+	public void setVersion(int version) {
+		this.version = version;
+	}
 }
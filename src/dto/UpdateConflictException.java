@@ -0,0 +1,22 @@
+package dto;
+
+/**
+ * Thrown when a page is saved from an outdated copy: someone else saved the
+ * page after it was loaded. Carries the page as it is stored now, so the editor
+ * can show it or save again on top of it.
+ */
+public class UpdateConflictException extends Exception {
+	private static final long serialVersionUID = 1L;
+
+	private final Pages current;
+
+	public UpdateConflictException(Pages current) {
+		super("Page " + current.getPageNumber() + " of file " + current.getFileId()
+				+ " was changed by someone else (now at version " + current.getVersion() + ")");
+		this.current = current;
+	}
+
+	public Pages getCurrent() {
+		return current;
+	}
+}
@@ -29,8 +29,10 @@ import javax.swing.JSplitPane;
 import javax.swing.JTable;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.UIManager;
 import javax.swing.table.DefaultTableModel;
 
@@ -40,11 +42,13 @@ import org.apache.logging.log4j.Logger;
 import bll.IEditorBO;
 import dto.Documents;
 import dto.Pages;
+import dto.UpdateConflictException;
 
 public class EditorPO extends JFrame {
 
 	private static final long serialVersionUID = 1L;
 	private static final Logger logger = LogManager.getLogger(EditorPO.class);
+	private static final String ANALYSIS_COMPLETE = "Complete";
 	private IEditorBO businessObj;
 	private DefaultTableModel tableModel;
 	private JPanel mainPanel, editPanel, transliterationPanel;
@@ -91,6 +95,7 @@ public class EditorPO extends JFrame {
 	private boolean wordCountRunning = true; 
 	private boolean avgWordLengthRunning = true; 
 	private boolean totalLineCountRunning = true;
+	private Timer analysisStatusTimer;
 	Font buttonFont = new Font("Arial", Font.BOLD, 12);
 
 	public EditorPO(IEditorBO businessObj) {
@@ -128,8 +133,8 @@ public class EditorPO extends JFrame {
 
 	private void setupMainMenuPanel() {
 
-		tableModel = new DefaultTableModel(new Object[] { "File ID", "File Name", "Last Modified", "Date Created" },
-				0) {
+		tableModel = new DefaultTableModel(
+				new Object[] { "File ID", "File Name", "Last Modified", "Date Created", "Analysis" }, 0) {
 			private static final long serialVersionUID = 1L;
 
 			@Override
@@ -143,6 +148,7 @@ public class EditorPO extends JFrame {
 		fileTable.getColumnModel().getColumn(0).setMinWidth(0);
 		fileTable.getColumnModel().getColumn(0).setMaxWidth(0);
 		fileTable.getTableHeader().setReorderingAllowed(false);
+		fileTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
 		JScrollPane scroller = new JScrollPane(fileTable);
 		JButton importFileButton = new JButton("Upload Files");
 		JButton createFileButton = new JButton("Create New File");
@@ -209,29 +215,9 @@ public class EditorPO extends JFrame {
 						@Override
 						public void run() {
 							selectedDocFileId = (int) tableModel.getValueAt(selectedRow, 0);
-							selectedDoc = null;
 							selectedDoc = businessObj.getFile(selectedDocFileId);
-							pages = selectedDoc.getPages();
-							String selectedDocContent = null;
-							for (int i = 0; i < pages.size(); i++) {
-								selectedDocContent = pages.get(i).getPageContent();
-							}
-
-							List<String> unselectedDocsContent = new ArrayList<String>();
-							for (int row = 0; row < fileTable.getRowCount(); row++) {
-								int unselectedDocFileId = (int) tableModel.getValueAt(row, 0);
-								if (unselectedDocFileId != selectedDocFileId) {
-									Documents unselectedDoc = null;
-									unselectedDoc = businessObj.getFile(unselectedDocFileId);
-									pages = unselectedDoc.getPages();
-									String unselectedDocContent = null;
-									for (int i = 0; i < pages.size(); i++) {
-										unselectedDocContent = pages.get(i).getPageContent();
-									}
-									unselectedDocsContent.add(unselectedDocContent);
-								}
-							}
-							tfidfScore = businessObj.performTFIDF(unselectedDocsContent, selectedDocContent);
+							// The stored score, kept fresh in the background, so no other file is read
+							tfidfScore = businessObj.getTfIdfScore(selectedDocFileId);
 						}
 
 					});
@@ -297,6 +283,9 @@ public class EditorPO extends JFrame {
 			JOptionPane.showMessageDialog(null, "TF-IDF Score for '" + selectedDoc.getName() + "' is: " + tfidfScore);
 			logger.info("TF-IDF Score for '" + selectedDoc.getName() + "' is: " + tfidfScore);
 		});
+
+		analysisStatusTimer = new Timer(5000, e -> refreshAnalysisStatuses());
+		analysisStatusTimer.start();
 	}
 
 	private void setupEditPanel() {
@@ -831,14 +820,18 @@ public class EditorPO extends JFrame {
 	}
 
 	private void deleteSelectedFiles(ActionEvent e) {
-		if (confirmAction("Do you want to delete the selected file?")) {
-			int selectedRow = fileTable.getSelectedRow();
-			if (selectedRow != -1) {
-				int fileId = (int) tableModel.getValueAt(selectedRow, 0);
-				boolean deleted = businessObj.deleteFile(fileId);
-				JOptionPane.showMessageDialog(null,
-						deleted ? "File deleted successfully!" : "Failed to delete the selected file.");
-				logger.info(deleted ? "File deleted successfully!" : "Failed to delete the selected file.");
+		if (confirmAction("Do you want to delete the selected file(s)?")) {
+			int[] selectedRows = fileTable.getSelectedRows();
+			if (selectedRows.length > 0) {
+				List<Integer> fileIds = new ArrayList<>();
+				for (int row : selectedRows) {
+					fileIds.add((int) tableModel.getValueAt(row, 0));
+				}
+				boolean deleted = businessObj.deleteFiles(fileIds);
+				String message = deleted ? fileIds.size() + " file(s) deleted successfully!"
+						: "Failed to delete the selected file(s), none were deleted.";
+				JOptionPane.showMessageDialog(null, message);
+				logger.info(message);
 				refreshFileList();
 			} else {
 				JOptionPane.showMessageDialog(null, "Please select a file to delete.");
@@ -858,7 +851,17 @@ public class EditorPO extends JFrame {
 				content = "";
 			}
 
-			boolean updated = businessObj.updateFile(fileId, fileName, currentPage, content);
+			Pages page = getLoadedPage(currentPage);
+			boolean updated;
+			try {
+				updated = savePage(fileId, fileName, page, content, page.getVersion());
+			} catch (UpdateConflictException e) {
+				logger.warn(e.getMessage());
+				if (!resolveConflict(fileId, fileName, page, content, e)) {
+					return;
+				}
+				updated = true;
+			}
 			JOptionPane.showMessageDialog(null,
 					updated ? "File updated successfully!" : "File update failed. Duplicate file may exist.");
 			logger.info(updated ? "File updated successfully!" : "File update failed. Duplicate file may exist.");
@@ -879,7 +882,21 @@ public class EditorPO extends JFrame {
 				content = "";
 			}
 
-			boolean updated = businessObj.updateFile(fileId, fileName, currentPage, content);
+			Pages page = getLoadedPage(currentPage);
+			boolean updated;
+			try {
+				updated = savePage(fileId, fileName, page, content, page.getVersion());
+			} catch (UpdateConflictException e) {
+				// Never overwrite someone else's edit in the background; the next manual
+				// save asks what to do
+				logger.warn(e.getMessage());
+				savingStatusLabel.setText("Not saved: page changed elsewhere");
+				savingStatusLabel.setVisible(true);
+				Thread.sleep(5000);
+				savingStatusLabel.setVisible(false);
+				savingStatusLabel.setText("Auto-Saving...");
+				return;
+			}
 			if (updated) {
 				savingStatusLabel.setVisible(true);
 				Thread.sleep(5000);
@@ -891,6 +908,63 @@ public class EditorPO extends JFrame {
 		}
 	}
 
+	/**
+	 * Saves {@code content} over the loaded {@code page} if it is still at
+	 * {@code version}, and keeps the loaded copy in step with what was stored.
+	 */
+	private boolean savePage(int fileId, String fileName, Pages page, String content, int version)
+			throws UpdateConflictException {
+		synchronized (page) {
+			int saved = businessObj.updateFile(fileId, fileName, page.getPageNumber(), content, version);
+			if (saved < 0) {
+				return false;
+			}
+			page.setPageContent(content);
+			page.setVersion(saved);
+			return true;
+		}
+	}
+
+	/**
+	 * Lets the user choose between their edit and the one saved meanwhile. Returns
+	 * whether the page was saved.
+	 */
+	private boolean resolveConflict(int fileId, String fileName, Pages page, String content,
+			UpdateConflictException conflict) {
+		Object[] options = { "Keep mine", "Load theirs", "Cancel" };
+		int choice = JOptionPane.showOptionDialog(null,
+				"Page " + page.getPageNumber() + " was changed by someone else since you opened it.\n"
+						+ "Keep your version, or load theirs and lose your changes?",
+				"Edit Conflict", JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE, null, options,
+				options[2]);
+		Pages current = conflict.getCurrent();
+		if (choice == 0) {
+			try {
+				return savePage(fileId, fileName, page, content, current.getVersion());
+			} catch (UpdateConflictException e) {
+				logger.warn(e.getMessage());
+				return resolveConflict(fileId, fileName, page, content, e);
+			}
+		}
+		if (choice == 1) {
+			synchronized (page) {
+				page.setPageContent(current.getPageContent());
+				page.setVersion(current.getVersion());
+			}
+			loadPage(page.getPageNumber());
+		}
+		return false;
+	}
+
+	private Pages getLoadedPage(int pageNumber) {
+		for (Pages page : pages) {
+			if (page.getPageNumber() == pageNumber) {
+				return page;
+			}
+		}
+		throw new IllegalStateException("Page " + pageNumber + " is not loaded");
+	}
+
 	private void nextPage() {
 		if (currentPage < totalPageCount) {
 			currentPage++;
@@ -948,12 +1022,39 @@ public class EditorPO extends JFrame {
 
 	private void refreshFileList() {
 		List<Documents> docs = businessObj.getAllFiles();
+		Map<Integer, String> statuses = businessObj.getAnalysisStatuses();
 		tableModel.setRowCount(0);
 
 		for (Documents doc : docs) {
-			Object[] rowData = { doc.getId(), doc.getName(), doc.getLastModified(), doc.getDateCreated() };
+			Object[] rowData = { doc.getId(), doc.getName(), doc.getLastModified(), doc.getDateCreated(),
+					statuses.getOrDefault(doc.getId(), ANALYSIS_COMPLETE) };
 			tableModel.addRow(rowData);
 		}
 	}
 
+	// Polls the background analytics worker while any listed file is still being
+	// analysed, so the Analysis column catches up without a manual refresh.
+	private void refreshAnalysisStatuses() {
+		boolean pending = false;
+		for (int row = 0; row < tableModel.getRowCount(); row++) {
+			if (!ANALYSIS_COMPLETE.equals(tableModel.getValueAt(row, 4))) {
+				pending = true;
+				break;
+			}
+		}
+		if (!pending) {
+			return;
+		}
+
+		new Thread(() -> {
+			Map<Integer, String> statuses = businessObj.getAnalysisStatuses();
+			SwingUtilities.invokeLater(() -> {
+				for (int row = 0; row < tableModel.getRowCount(); row++) {
+					int fileId = (int) tableModel.getValueAt(row, 0);
+					tableModel.setValueAt(statuses.getOrDefault(fileId, ANALYSIS_COMPLETE), row, 4);
+				}
+			});
+		}).start();
+	}
+
 }
\ No newline at end of file
@@ -1,20 +1,32 @@
 package pl;
 
+import java.awt.BorderLayout;
+import java.awt.Frame;
 import java.awt.event.ActionEvent;
 import java.io.File;
+import java.util.Arrays;
 
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import bll.IEditorBO;
+import bll.ImportService;
+import dto.ImportReport;
 
 public class FileImporter {
 	private static final Logger logger = LogManager.getLogger(EditorPO.class);
     private IEditorBO businessObj;
+    private JProgressBar progressBar;
 
     public FileImporter(IEditorBO businessObj) {
         this.businessObj = businessObj;
@@ -34,14 +46,58 @@ public class FileImporter {
         if (result == JFileChooser.APPROVE_OPTION) {
             File[] selectedFiles = fileChooser.getSelectedFiles();
             if (selectedFiles.length > 0) {
-                for (File selectedFile : selectedFiles) {
-                    String fileName = selectedFile.getName();
-                    boolean isImport = businessObj.importTextFiles(selectedFile, fileName);
-                    JOptionPane.showMessageDialog(null,
-                            isImport ? fileName + " uploaded successfully!" : fileName + " failed to upload!");
-                    logger.info(isImport ? fileName + " uploaded successfully!" : fileName + " failed to upload!");
+                ImportService importService = new ImportService(businessObj);
+                JDialog progressDialog = createProgressDialog(importService, selectedFiles.length);
+                try {
+                    ImportReport report = importService.importFiles(Arrays.asList(selectedFiles),
+                            new ImportService.Listener() {
+                                @Override
+                                public void fileStarted(File file) {
+                                }
+
+                                @Override
+                                public void fileFinished(File file, boolean imported, int completed, int total) {
+                                    logger.info(imported ? file.getName() + " uploaded successfully!"
+                                            : file.getName() + " failed to upload!");
+                                    SwingUtilities.invokeLater(() -> {
+                                        progressBar.setValue(completed);
+                                        progressBar.setString(completed + " of " + total + " file(s)");
+                                    });
+                                }
+                            });
+                    SwingUtilities.invokeLater(progressDialog::dispose);
+                    JOptionPane.showMessageDialog(null, report.toString(), "Import Summary",
+                            report.getFailed().isEmpty() ? JOptionPane.INFORMATION_MESSAGE
+                                    : JOptionPane.WARNING_MESSAGE);
+                } finally {
+                    importService.shutdown();
                 }
             }
         }
     }
+
+    // Non-modal, so the import runs on while it is shown; Cancel skips the files not started yet
+    private JDialog createProgressDialog(ImportService importService, int total) {
+        JDialog dialog = new JDialog((Frame) null, "Importing Files", false);
+        progressBar = new JProgressBar(0, total);
+        progressBar.setStringPainted(true);
+        progressBar.setString("0 of " + total + " file(s)");
+
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(event -> {
+            importService.cancel();
+            cancelButton.setEnabled(false);
+            progressBar.setString("Cancelling...");
+        });
+
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        panel.add(progressBar, BorderLayout.CENTER);
+        panel.add(cancelButton, BorderLayout.EAST);
+        dialog.add(panel);
+        dialog.setSize(400, 90);
+        dialog.setLocationRelativeTo(null);
+        SwingUtilities.invokeLater(() -> dialog.setVisible(true));
+        return dialog;
+    }
 }